@@ -1,10 +1,16 @@
 package com.Alimhan.JavaFlutterminiGame.Controllers;
 import com.Alimhan.JavaFlutterminiGame.models.*;
+import com.Alimhan.JavaFlutterminiGame.service.BuzzerRateLimiter;
 import com.Alimhan.JavaFlutterminiGame.service.GameService;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -13,11 +19,29 @@ import java.util.logging.Logger;
 @RequestMapping("/game")
 @CrossOrigin(origins = "*")  // Enable CORS for all origins
 public class GameController {
+    private static final long LONG_POLL_TIMEOUT_MS = 25_000;
+    // Buzzer answers are the same every time, no need to build a new one for each press
+    private static final ResponseEntity<Map<String, String>> BUZZER_ACCEPTED = ResponseEntity.ok(Map.of("status", "success"));
+    // Only for repeats that arrive before the press they repeat has been answered
+    private static final ResponseEntity<Map<String, String>> BUZZER_THROTTLED = ResponseEntity.ok(Map.of("status", "throttled"));
+    // For repeats of a press that failed
+    private static final ResponseEntity<Map<String, String>> BUZZER_FAILED = ResponseEntity.internalServerError().body(Map.of("error", "Server error: buzzer press failed"));
+
     private final GameService gameService;
+    private final BuzzerRateLimiter buzzerRateLimiter;
     private static final Logger logger = Logger.getLogger(GameController.class.getName());
 
-    public GameController(GameService gameService) {
+    public GameController(GameService gameService, BuzzerRateLimiter buzzerRateLimiter) {
         this.gameService = gameService;
+        this.buzzerRateLimiter = buzzerRateLimiter;
+    }
+
+    /**
+     * Whether an ID can name a store document. A slash would point into another collection, and
+     * the store refuses blank and dot IDs; either way the call must not reach the store.
+     */
+    static boolean isValidId(String id) {
+        return id != null && !id.isBlank() && id.indexOf('/') < 0 && !id.equals(".") && !id.equals("..");
     }
 
     /**
@@ -30,6 +54,10 @@ public class GameController {
         logger.info("Received request to create room: " + room);
 
         try {
+            if (room == null || !isValidId(room.getId())) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
+            }
+
             String roomId = gameService.createRoom(room);
             if (roomId != null) {
                 logger.info("Room created successfully with ID: " + roomId);
@@ -54,7 +82,8 @@ public class GameController {
         logger.info("Received request to join room: " + joinRequest);
 
         try {
-            if (joinRequest == null || joinRequest.getRoomID() == null || joinRequest.getPlayer() == null) {
+            if (joinRequest == null || joinRequest.getRoomID() == null || joinRequest.getPlayer() == null
+                    || !isValidId(joinRequest.getPlayer().getId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid request data"));
             }
 
@@ -82,7 +111,8 @@ public class GameController {
         logger.info("Received request to exit room: " + exitRequest);
 
         try {
-            if (exitRequest == null || exitRequest.getRoomId() == null || exitRequest.getPlayer() == null) {
+            if (exitRequest == null || !isValidId(exitRequest.getRoomId()) || exitRequest.getPlayer() == null
+                    || !isValidId(exitRequest.getPlayer().getId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid request data"));
             }
 
@@ -105,7 +135,7 @@ public class GameController {
         logger.info("Received request to delete room: " + roomId);
 
         try {
-            if (roomId == null || roomId.isEmpty()) {
+            if (!isValidId(roomId)) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
             }
 
@@ -121,17 +151,32 @@ public class GameController {
     /**
      * Gets a room by ID
      * @param roomId The ID of the room to get
-     * @return Response with room details or error message
+     * @param playerId ID of the player asking; the host also gets the answer of the current question
+     * @return Response with room details and current question, 304 if the If-None-Match version
+     * is still current, or error message
      */
     @GetMapping("/rooms/{roomId}")
-    public ResponseEntity<?> getRoom(@PathVariable String roomId) {
-        logger.info("Received request to get room: " + roomId);
-
+    public ResponseEntity<?> getRoom(@PathVariable String roomId,
+                                     @RequestParam(required = false) String playerId,
+                                     WebRequest webRequest) {
         try {
-            Room room = gameService.getRoomById(roomId);
-            if (room != null) {
+            if (!isValidId(roomId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
+            }
+
+            Long knownVersion = gameService.getRoomVersion(roomId);
+            if (knownVersion != null && webRequest.checkNotModified(String.valueOf(knownVersion))) {
+                return null;
+            }
+
+            logger.info("Received request to get room: " + roomId);
+            RoomState state = gameService.getRoomState(roomId, playerId);
+            if (state != null) {
+                // The room was read from the store, so its version can still answer If-None-Match
+                String version = String.valueOf(state.getRoom().getVersion());
+                if (webRequest.checkNotModified(version)) return null;
                 logger.info("Room " + roomId + " found");
-                return ResponseEntity.ok(room);
+                return ResponseEntity.ok().eTag(version).body(state);
             } else {
                 logger.warning("Room " + roomId + " not found");
                 return ResponseEntity.notFound().build();
@@ -142,10 +187,54 @@ public class GameController {
         }
     }
 
+    /**
+     * Long-polls a room for changes
+     * @param roomId The ID of the room to watch
+     * @param sinceVersion Version of the room the client already has
+     * @param playerId ID of the player asking; the host also gets the answer of the current question
+     * @return The fields changed after sinceVersion as soon as there are any, or 304 once the poll times out
+     */
+    @GetMapping(value = "/rooms/{roomId}", params = "sinceVersion")
+    public DeferredResult<ResponseEntity<?>> pollRoom(@PathVariable String roomId,
+                                                      @RequestParam long sinceVersion,
+                                                      @RequestParam(required = false) String playerId) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(LONG_POLL_TIMEOUT_MS);
+        if (!isValidId(roomId)) {
+            result.setResult(ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID")));
+            return result;
+        }
+
+        Runnable respond = () -> {
+            try {
+                RoomDelta delta = gameService.getRoomChanges(roomId, sinceVersion, playerId);
+                result.setResult(delta == null
+                        ? ResponseEntity.notFound().build()
+                        : ResponseEntity.ok().eTag(String.valueOf(delta.getVersion())).body(delta));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error polling room", e);
+                result.setResult(ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage())));
+            }
+        };
+
+        RoomDelta delta = gameService.getRoomChanges(roomId, sinceVersion, playerId);
+        if (delta == null || !delta.isEmpty() || !gameService.awaitRoomChange(roomId, sinceVersion, respond)) {
+            respond.run();
+            return result;
+        }
+
+        result.onTimeout(() -> result.setResult(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(String.valueOf(sinceVersion)).build()));
+        result.onCompletion(() -> gameService.cancelRoomChangeWait(roomId, respond));
+        return result;
+    }
+
     @PostMapping("/rooms/{roomId}/nextQuestion")
     public ResponseEntity<Map<String, String>> nextQuestion(
             @PathVariable String roomId,
             @RequestParam String currentQuestionId) {
+        if (!isValidId(roomId) || !isValidId(currentQuestionId)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid roomId or currentQuestionId"));
+        }
         String nextQuestionId = gameService.nextQuestion(roomId, currentQuestionId);
         if (nextQuestionId != null) {
             logger.info("Next question ID: " + nextQuestionId);
@@ -156,16 +245,24 @@ public class GameController {
 
     @PostMapping("/FirstBuzzer")
     public ResponseEntity<Map<String, String>> firstBuzzer(@RequestBody BuzzerRequest request) {
-        logger.info("Received request to set first buzzer: " + request);
         try {
-            if (request.getRoomId() == null      || request.getPlayerId() == null) {
+            if (!isValidId(request.getRoomId()) || !isValidId(request.getPlayerId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid roomId or playerId"));
             }
+            if (!buzzerRateLimiter.tryPress(request.getRoomId(), request.getPlayerId())) {
+                // A repeat gets the answer its player's handled press got
+                BuzzerRateLimiter.Outcome last = buzzerRateLimiter.lastOutcome(request.getRoomId(), request.getPlayerId());
+                if (last == null) return BUZZER_THROTTLED;
+                return last == BuzzerRateLimiter.Outcome.ACCEPTED ? BUZZER_ACCEPTED : BUZZER_FAILED;
+            }
+            logger.info("Received request to set first buzzer: " + request);
             gameService.setFirstBuzzer(request.getRoomId(), request.getPlayerId());
             logger.info("Player " + request.getPlayerId() + " is the first buzzer in room " + request.getRoomId());
-            return ResponseEntity.ok(Map.of("status", "success"));
+            buzzerRateLimiter.remember(request.getRoomId(), request.getPlayerId(), BuzzerRateLimiter.Outcome.ACCEPTED);
+            return BUZZER_ACCEPTED;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error setting first buzzer", e);
+            buzzerRateLimiter.remember(request.getRoomId(), request.getPlayerId(), BuzzerRateLimiter.Outcome.FAILED);
             return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
         }
     }
@@ -177,7 +274,7 @@ public class GameController {
     public ResponseEntity<Map<String, String>> resetBuzzing(@RequestBody BuzzerRequest request) {
         logger.info("Received request to reset buzzing: " + request);
         try {
-            if (request.getRoomId() == null  || request.getQuestionId() == null) {
+            if (!isValidId(request.getRoomId()) || !isValidId(request.getQuestionId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid roomId, playerId, or questionId"));
             }
             gameService.resetBuzzing(request.getRoomId(), request.getQuestionId());
@@ -196,7 +293,7 @@ public class GameController {
     public ResponseEntity<Map<String, String>> cancelBuzzing(@RequestBody BuzzerRequest request) {
         logger.info("Received request to cancel buzzing: " + request);
         try {
-            if (request.getRoomId() == null || request.getQuestionId() == null) {
+            if (!isValidId(request.getRoomId()) || !isValidId(request.getQuestionId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid roomId, playerId, or questionId"));
             }
             gameService.cancelBuzzing(request.getRoomId(), request.getQuestionId());
@@ -208,9 +305,112 @@ public class GameController {
         }
     }
 
+    /**
+     * Adds a whole roster of players to a room in one commit. Players already in the room
+     * keep their score; only their name and avatar are updated.
+     * @param request Players to add, and the room password or the host's ID
+     * @return Response with the IDs of the players added and updated, or error message
+     */
+    @PostMapping("/rooms/{roomId}/players")
+    public ResponseEntity<?> joinRoomBatch(@PathVariable String roomId, @RequestBody BatchJoinRequest request) {
+        logger.info("Received request to add players to room: " + roomId);
+
+        try {
+            if (!isValidId(roomId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
+            }
+            List<Player> players = request.getPlayers();
+            if (players == null || players.isEmpty() || players.size() > GameService.MAX_BATCH_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Between 1 and " + GameService.MAX_BATCH_SIZE + " players are required"));
+            }
+            if (players.stream().anyMatch(player -> player == null || !isValidId(player.getId()))) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Every player needs a valid id"));
+            }
+            if (request.getRoomPassword() == null && request.getHostId() == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "roomPassword or hostId is required"));
+            }
+
+            Map<String, Object> result = gameService.joinRoomBatch(roomId, request.getRoomPassword(), request.getHostId(), players);
+            if (result == null) {
+                logger.warning("Failed to add players: Room " + roomId + " not found or wrong password");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Room not found or wrong password"));
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error adding players to room", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Changes the scores of many players in one commit. Changes for the same player are added up.
+     * @param request Score changes and the host's ID
+     * @return Response with the changes applied, 404 if the room, the host or a player is not
+     * found, or error message
+     */
+    @PostMapping("/rooms/{roomId}/scores")
+    public ResponseEntity<?> adjustScores(@PathVariable String roomId, @RequestBody ScoreAdjustmentsRequest request) {
+        logger.info("Received request to adjust scores in room: " + roomId);
+
+        try {
+            if (!isValidId(roomId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
+            }
+            List<ScoreAdjustment> adjustments = request.getAdjustments();
+            if (adjustments == null || adjustments.isEmpty() || adjustments.size() > GameService.MAX_BATCH_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Between 1 and " + GameService.MAX_BATCH_SIZE + " adjustments are required"));
+            }
+
+            Map<String, Long> changes = new LinkedHashMap<>();
+            for (ScoreAdjustment adjustment : adjustments) {
+                if (adjustment == null || !isValidId(adjustment.getPlayerId())) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Every adjustment needs a valid playerId"));
+                }
+                changes.merge(adjustment.getPlayerId(), adjustment.getChange(), Long::sum);
+            }
+            if (request.getHostId() == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "hostId is required"));
+            }
+
+            Map<String, Object> result = gameService.adjustScores(roomId, request.getHostId(), changes);
+            return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error adjusting scores", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Scores the first buzzer, reopens buzzing and moves to the next question in one commit
+     * @param request Question answered, whether the answer was correct, and whether to advance
+     * @return Response with the score change and next question, or error message
+     */
+    @PostMapping("/rooms/{roomId}/judge")
+    public ResponseEntity<?> judge(@PathVariable String roomId, @RequestBody JudgeRequest request) {
+        logger.info("Received request to judge room " + roomId + ": " + request);
+
+        try {
+            if (!isValidId(roomId) || (request.getQuestionId() != null && !isValidId(request.getQuestionId()))) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid roomId or questionId"));
+            }
+            if (request.getCorrect() == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "correct is required"));
+            }
+
+            Map<String, Object> result = gameService.judge(roomId, request.getQuestionId(), request.getCorrect(), request.isAdvance());
+            return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error judging answer", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/final/{roomId}")
     public ResponseEntity<Map<String, String>> createFinalScoreBoard(@PathVariable String roomId){
         try {
+            if (!isValidId(roomId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid room ID"));
+            }
             gameService.createFinalScoreBoard(roomId);
             return ResponseEntity.ok(Map.of("status", "success"));
         }
@@ -338,3 +538,138 @@ class ExitRoomRequest {
         return "ExitRoomRequest{roomId=" + roomId + ", player=" + player + "}";
     }
 }
+
+/**
+ * Request object for adding many players to a room
+ */
+@Setter
+@Getter
+class BatchJoinRequest {
+    private List<Player> players;
+    private String roomPassword;     // either this or hostId
+    private String hostId;
+
+    public BatchJoinRequest() {}
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    public void setPlayers(List<Player> players) {
+        this.players = players;
+    }
+
+    public String getRoomPassword() {
+        return roomPassword;
+    }
+
+    public void setRoomPassword(String roomPassword) {
+        this.roomPassword = roomPassword;
+    }
+
+    public String getHostId() {
+        return hostId;
+    }
+
+    public void setHostId(String hostId) {
+        this.hostId = hostId;
+    }
+}
+
+/**
+ * Request object for changing the scores of many players
+ */
+@Setter
+@Getter
+class ScoreAdjustmentsRequest {
+    private List<ScoreAdjustment> adjustments;
+    private String hostId;
+
+    public ScoreAdjustmentsRequest() {}
+
+    public List<ScoreAdjustment> getAdjustments() {
+        return adjustments;
+    }
+
+    public void setAdjustments(List<ScoreAdjustment> adjustments) {
+        this.adjustments = adjustments;
+    }
+
+    public String getHostId() {
+        return hostId;
+    }
+
+    public void setHostId(String hostId) {
+        this.hostId = hostId;
+    }
+}
+
+/**
+ * Score change of one player, negative to deduct
+ */
+@Setter
+@Getter
+class ScoreAdjustment {
+    private String playerId;
+    private long change;
+
+    public ScoreAdjustment() {}
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public void setPlayerId(String playerId) {
+        this.playerId = playerId;
+    }
+
+    public long getChange() {
+        return change;
+    }
+
+    public void setChange(long change) {
+        this.change = change;
+    }
+}
+
+/**
+ * Request object for judging the first buzzer's answer
+ */
+@Setter
+@Getter
+class JudgeRequest {
+    private String questionId;       // the room's current question if not set
+    private Boolean correct;         // required
+    private boolean advance = true;
+
+    public JudgeRequest() {}
+
+    @Override
+    public String toString() {
+        return "JudgeRequest{questionId=" + questionId + ", correct=" + correct + ", advance=" + advance + "}";
+    }
+
+    public String getQuestionId() {
+        return questionId;
+    }
+
+    public void setQuestionId(String questionId) {
+        this.questionId = questionId;
+    }
+
+    public Boolean getCorrect() {
+        return correct;
+    }
+
+    public void setCorrect(Boolean correct) {
+        this.correct = correct;
+    }
+
+    public boolean isAdvance() {
+        return advance;
+    }
+
+    public void setAdvance(boolean advance) {
+        this.advance = advance;
+    }
+}
@@ -0,0 +1,61 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.models.ImportReport;
+import com.Alimhan.JavaFlutterminiGame.service.QuestionImportService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/game/questions")
+@CrossOrigin(origins = "*")  // Enable CORS for all origins
+public class QuestionController {
+    private final QuestionImportService importService;
+    private static final Logger logger = Logger.getLogger(QuestionController.class.getName());
+
+    public QuestionController(QuestionImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Imports a question pack streamed in the request body
+     * @param pack CSV with a text,answer,score header, or JSON question objects
+     * @param format "csv" or "json"; guessed from the Content-Type when missing
+     * @param packName Optional pack name; its questions get IDs starting with it and play in file order
+     * @param jobId Optional ID to follow the import's progress under
+     * @return Import report or error message
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importPack(InputStream pack,
+                                        @RequestParam(required = false) String format,
+                                        @RequestParam(name = "pack", required = false) String packName,
+                                        @RequestParam(required = false) String jobId,
+                                        @RequestHeader(value = "Content-Type", required = false) String contentType) {
+        logger.info("Received request to import questions, format=" + format + ", contentType=" + contentType);
+
+        try {
+            ImportReport report = importService.importPack(pack, QuestionImportService.Format.detect(format, contentType), packName, jobId);
+            if ("FAILED".equals(report.getStatus())) {
+                logger.warning("Question import failed: " + report.getFailure());
+                return ResponseEntity.badRequest().body(report);
+            }
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown format: " + format));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error importing questions", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Gets the progress of a running or recently finished import
+     */
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<?> getImport(@PathVariable String jobId) {
+        ImportReport report = importService.getJob(jobId);
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.models.Standing;
+import com.Alimhan.JavaFlutterminiGame.models.Tournament;
+import com.Alimhan.JavaFlutterminiGame.service.TournamentService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/game/tournaments")
+@CrossOrigin(origins = "*")  // Enable CORS for all origins
+public class TournamentController {
+    private static final int MAX_LEADERBOARD_SIZE = 1000;
+
+    private final TournamentService tournamentService;
+    private static final Logger logger = Logger.getLogger(TournamentController.class.getName());
+
+    public TournamentController(TournamentService tournamentService) {
+        this.tournamentService = tournamentService;
+    }
+
+    /**
+     * Creates a tournament
+     * @param tournament Tournament with a name and optionally its room IDs
+     * @return Response with tournament ID or error message
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, String>> createTournament(@RequestBody Tournament tournament) {
+        logger.info("Received request to create tournament: " + (tournament != null ? tournament.getName() : null));
+
+        try {
+            Tournament created = tournamentService.createTournament(tournament);
+            if (created == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid tournament data"));
+            }
+            return ResponseEntity.ok(Map.of("tournamentId", created.getId(), "status", "success"));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error creating tournament", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Adds a room to a tournament
+     */
+    @PostMapping("/{tournamentId}/rooms/{roomId}")
+    public ResponseEntity<Map<String, String>> addRoom(@PathVariable String tournamentId, @PathVariable String roomId) {
+        logger.info("Received request to add room " + roomId + " to tournament " + tournamentId);
+
+        try {
+            if (!tournamentService.addRoom(tournamentId, roomId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(Map.of("status", "success"));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error adding room to tournament", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Gets the best players across all rooms of a tournament
+     * @param top Number of players to return
+     */
+    @GetMapping("/{tournamentId}/leaderboard")
+    public ResponseEntity<?> getLeaderboard(@PathVariable String tournamentId,
+                                            @RequestParam(defaultValue = "10") int top) {
+        try {
+            if (top < 1 || top > MAX_LEADERBOARD_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "top must be between 1 and " + MAX_LEADERBOARD_SIZE));
+            }
+            List<Standing> leaderboard = tournamentService.getLeaderboard(tournamentId, top);
+            return leaderboard != null ? ResponseEntity.ok(leaderboard) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error getting leaderboard", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Gets a player's rank in a tournament
+     */
+    @GetMapping("/{tournamentId}/players/{playerId}")
+    public ResponseEntity<?> getStanding(@PathVariable String tournamentId, @PathVariable String playerId) {
+        try {
+            Standing standing = tournamentService.getStanding(tournamentId, playerId);
+            return standing != null ? ResponseEntity.ok(standing) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error getting standing", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Rebuilds the leaderboard from the rooms and reports how far the live one is off
+     * @param repair Also replace the live leaderboard with the rebuilt one
+     */
+    @PostMapping("/{tournamentId}/recompute")
+    public ResponseEntity<?> recompute(@PathVariable String tournamentId,
+                                       @RequestParam(defaultValue = "false") boolean repair) {
+        logger.info("Received request to recompute tournament " + tournamentId + ", repair=" + repair);
+
+        try {
+            Map<String, Object> result = tournamentService.recompute(tournamentId, repair);
+            return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error recomputing tournament", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+}
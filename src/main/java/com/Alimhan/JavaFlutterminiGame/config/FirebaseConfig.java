@@ -3,15 +3,37 @@ package com.Alimhan.JavaFlutterminiGame.config;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import javax.annotation.PostConstruct;
 import java.io.InputStream;
 
 @Configuration
 public class FirebaseConfig {
 
-    @PostConstruct
+    /**
+     * Firestore client, created off the startup path
+     */
+    @Bean
+    public FirestoreProvider firestoreProvider() {
+        return FirestoreProvider.startAsync(this::initializeFirebase);
+    }
+
+    /**
+     * Keeps the instance out of the readiness group until Firestore answered its first call
+     */
+    @Bean
+    public HealthIndicator firestoreHealthIndicator(FirestoreProvider firestoreProvider) {
+        return () -> {
+            if (firestoreProvider.isReady()) return Health.up().build();
+
+            Throwable failure = firestoreProvider.failure();
+            return failure != null ? Health.down().withDetail("error", String.valueOf(failure.getMessage())).build() : Health.outOfService().build();
+        };
+    }
+
     public void initializeFirebase() {
         try {
             if (FirebaseApp.getApps().isEmpty()) {
@@ -31,6 +53,7 @@ public class FirebaseConfig {
             }
         } catch (Exception e) {
             System.err.println("❌ Failed to initialize Firebase: " + e.getMessage());
+            throw new IllegalStateException("Failed to initialize Firebase", e);
         }
     }
 }
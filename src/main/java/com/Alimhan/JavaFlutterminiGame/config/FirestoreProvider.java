@@ -0,0 +1,125 @@
+package com.Alimhan.JavaFlutterminiGame.config;
+
+import com.Alimhan.JavaFlutterminiGame.service.StoreUnavailableException;
+import com.google.cloud.firestore.Firestore;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Firestore client that is created in the background, so startup doesn't wait for credentials
+ * and the gRPC channel. Callers that need the client before it's ready wait for it, but only
+ * for {@link #CLIENT_WAIT_MS}, so requests don't pile up behind a slow or failed start.
+ */
+public class FirestoreProvider {
+    private static final Logger logger = Logger.getLogger(FirestoreProvider.class.getName());
+    private static final long MAX_WARMUP_BACKOFF_MS = 30_000;
+    private static final long CLIENT_WAIT_MS = 5_000;
+
+    private final CompletableFuture<Firestore> firestore;
+    private final CompletableFuture<Boolean> warm;
+
+    private FirestoreProvider(CompletableFuture<Firestore> firestore, CompletableFuture<Boolean> warm) {
+        this.firestore = firestore;
+        this.warm = warm;
+    }
+
+    /**
+     * Provider for a client that already exists
+     */
+    public static FirestoreProvider of(Firestore firestore) {
+        return new FirestoreProvider(CompletableFuture.completedFuture(firestore), CompletableFuture.completedFuture(true));
+    }
+
+    /**
+     * Starts initializing Firebase on a background thread
+     * @param initializer Sets up the default FirebaseApp
+     */
+    public static FirestoreProvider startAsync(Runnable initializer) {
+        Executor background = runnable -> {
+            Thread thread = new Thread(runnable, "firestore-init");
+            thread.setDaemon(true);
+            thread.start();
+        };
+        CompletableFuture<Firestore> firestore = CompletableFuture.supplyAsync(() -> {
+            initializer.run();
+            return FirestoreClient.getFirestore();
+        }, background);
+        return new FirestoreProvider(firestore, firestore.thenApply(FirestoreProvider::warmUpUntilDone));
+    }
+
+    /**
+     * Gets the client, waiting for it if it's still being created
+     * @throws StoreUnavailableException if the client isn't there within {@link #CLIENT_WAIT_MS}
+     * or could not be created
+     */
+    public Firestore get() {
+        try {
+            return firestore.get(CLIENT_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new StoreUnavailableException("Firestore client not created after " + CLIENT_WAIT_MS + " ms", e);
+        } catch (ExecutionException e) {
+            throw new StoreUnavailableException("Firestore client could not be created", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreUnavailableException("Interrupted waiting for the Firestore client", e);
+        }
+    }
+
+    /**
+     * Whether the client exists and has made its first round trip
+     */
+    public boolean isReady() {
+        return !warm.isCompletedExceptionally() && warm.getNow(false);
+    }
+
+    /**
+     * @return Why the client could not be created, or null
+     */
+    public Throwable failure() {
+        if (!firestore.isCompletedExceptionally()) return null;
+        try {
+            firestore.join();
+            return null;
+        } catch (Exception e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    /**
+     * Warms up the client, trying again with growing pauses until a round trip succeeds, so the
+     * server only reports ready once the store is reachable
+     */
+    private static boolean warmUpUntilDone(Firestore db) {
+        long backoff = 1_000;
+        while (!warmUp(db)) {
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, MAX_WARMUP_BACKOFF_MS);
+        }
+        return true;
+    }
+
+    private static boolean warmUp(Firestore db) {
+        // The first call opens the channel and fetches an access token; do it before any player has to
+        long start = System.nanoTime();
+        try {
+            db.collection("Rooms").limit(1).get().get(10, TimeUnit.SECONDS);
+            logger.info("Firestore channel warmed up in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Firestore warmup failed, not ready until it succeeds: " + e.getMessage(), e);
+            return false;
+        }
+    }
+}
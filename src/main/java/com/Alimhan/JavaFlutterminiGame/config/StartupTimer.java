@@ -0,0 +1,44 @@
+package com.Alimhan.JavaFlutterminiGame.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Logs how long after JVM start the application became ready and served its first request,
+ * to compare cold starts with and without the fast-start build.
+ */
+@Component
+public class StartupTimer extends OncePerRequestFilter {
+    private static final Logger logger = Logger.getLogger(StartupTimer.class.getName());
+
+    private final AtomicBoolean firstServed = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        logger.info("Application ready " + sinceJvmStart() + " ms after JVM start");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(request, response);
+        if (!firstServed.get() && firstServed.compareAndSet(false, true)) {
+            logger.info("First request served " + sinceJvmStart() + " ms after JVM start");
+        }
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
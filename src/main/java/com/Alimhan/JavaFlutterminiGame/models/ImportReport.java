@@ -0,0 +1,134 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of one question pack import. Updated while the import runs, so it can
+ * be polled for progress.
+ */
+public class ImportReport {
+    private static final int MAX_ERRORS = 50;
+
+    private final String jobId;
+    private final String format;
+    private final long startedAt = System.currentTimeMillis();
+    private volatile long finishedAt;
+    private volatile String status = "RUNNING";
+    private volatile String failure;
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong existing = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    public ImportReport(String jobId, String format) {
+        this.jobId = jobId;
+        this.format = format;
+    }
+
+    public void parsed() {
+        parsed.incrementAndGet();
+    }
+
+    /**
+     * Counts a record that failed validation; only the first few reasons are kept
+     */
+    public void invalid(long record, String reason) {
+        invalid.incrementAndGet();
+        if (errors.size() < MAX_ERRORS) errors.add("record " + record + ": " + reason);
+    }
+
+    public void duplicate() {
+        duplicates.incrementAndGet();
+    }
+
+    public void existing(long count) {
+        existing.addAndGet(count);
+    }
+
+    public void written(long count) {
+        written.addAndGet(count);
+    }
+
+    public void failed(long count, String reason) {
+        failed.addAndGet(count);
+        if (errors.size() < MAX_ERRORS) errors.add(reason);
+    }
+
+    public void finish() {
+        status = failed.get() > 0 ? "PARTIAL" : "DONE";
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public void abort(String reason) {
+        failure = reason;
+        status = "FAILED";
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public boolean isSuccessful() {
+        return "DONE".equals(status);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getElapsedMs() {
+        return (finishedAt != 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+    }
+
+    public long getParsed() {
+        return parsed.get();
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getExisting() {
+        return existing.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{jobId=" + jobId + ", status=" + status + ", parsed=" + parsed + ", invalid=" + invalid
+                + ", duplicates=" + duplicates + ", existing=" + existing + ", written=" + written
+                + ", failed=" + failed + ", elapsedMs=" + getElapsedMs() + "}";
+    }
+}
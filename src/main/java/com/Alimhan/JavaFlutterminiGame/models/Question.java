@@ -0,0 +1,62 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class Question {
+    private String id;
+    private String text;
+    private String answer;
+    private long score = 0;
+
+    public Question() {
+    }
+
+    public Question(String id, String text, String answer, long score) {
+        this.id = id;
+        this.text = text;
+        this.answer = answer;
+        this.score = score;
+    }
+
+    /**
+     * Copy of this question without the answer, for players who are not hosting the room
+     */
+    public Question withoutAnswer() {
+        return new Question(id, text, null, score);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public void setAnswer(String answer) {
+        this.answer = answer;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public void setScore(long score) {
+        this.score = score;
+    }
+}
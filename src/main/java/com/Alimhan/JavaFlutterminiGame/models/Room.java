@@ -14,6 +14,7 @@ public class Room {
     private String firstBuzzer;      // playerId
     private String currentQuestion = "1";
     private Player host;
+    private long version = 0;        // bumped by every change to the room
 
     public Room() {}
 
@@ -85,4 +86,12 @@ public class Room {
     public void setHost(Player host) {
         this.host = host;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
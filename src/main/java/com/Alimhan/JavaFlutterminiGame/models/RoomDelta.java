@@ -0,0 +1,76 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * What changed in a room since a version the client already has. When the client is too far
+ * behind to compute the changes, {@code full} is set and the whole room is sent instead.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RoomDelta {
+    private final String roomId;
+    private final long version;
+    private final boolean full;
+    private final Room room;
+    private final Map<String, Object> changes;
+    private Question question;
+
+    private RoomDelta(String roomId, long version, boolean full, Room room, Map<String, Object> changes) {
+        this.roomId = roomId;
+        this.version = version;
+        this.full = full;
+        this.room = room;
+        this.changes = changes;
+    }
+
+    public static RoomDelta changes(String roomId, long version, Map<String, Object> changes) {
+        return new RoomDelta(roomId, version, false, null, changes);
+    }
+
+    public static RoomDelta full(Room room) {
+        return new RoomDelta(room.getId(), room.getVersion(), true, room, null);
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !full && changes.isEmpty();
+    }
+
+    /**
+     * Whether the current question of the room is part of this delta
+     */
+    public boolean touchesQuestion() {
+        return full || changes.containsKey("currentQuestion");
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public Map<String, Object> getChanges() {
+        return changes;
+    }
+
+    public Question getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(Question question) {
+        this.question = question;
+    }
+}
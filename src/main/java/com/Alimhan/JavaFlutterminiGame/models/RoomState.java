@@ -0,0 +1,37 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * Room as seen by one client: the room fields plus the resolved current question,
+ * so clients don't have to fetch the question document themselves.
+ */
+public class RoomState {
+    @JsonUnwrapped
+    private final Room room;
+    private final Question question;
+
+    public RoomState(Room room, Question question) {
+        this.room = room;
+        this.question = question;
+    }
+
+    /**
+     * Builds the state for a viewer; only the host gets to see the answer
+     * @param viewerId ID of the player asking, may be null
+     */
+    public static RoomState forViewer(Room room, Question question, String viewerId) {
+        if (question == null) return new RoomState(room, null);
+
+        boolean isHost = viewerId != null && room.getHost() != null && viewerId.equals(room.getHostId());
+        return new RoomState(room, isHost ? question : question.withoutAnswer());
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public Question getQuestion() {
+        return question;
+    }
+}
@@ -0,0 +1,69 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+/**
+ * Published whenever a player's score in a room changes, including joining and leaving, and
+ * when a room ends. Leaving or ending keeps the points scored so far.
+ */
+public class ScoreChangedEvent {
+    public enum Kind {
+        JOINED,     // score is the player's score in the room
+        SCORED,     // score is the change
+        LEFT,
+        ENDED       // the room was closed; no player
+    }
+
+    private final Kind kind;
+    private final String roomId;
+    private final String playerId;
+    private final String playerName;
+    private final long score;
+
+    private ScoreChangedEvent(Kind kind, String roomId, String playerId, String playerName, long score) {
+        this.kind = kind;
+        this.roomId = roomId;
+        this.playerId = playerId;
+        this.playerName = playerName;
+        this.score = score;
+    }
+
+    public static ScoreChangedEvent joined(String roomId, Player player) {
+        return new ScoreChangedEvent(Kind.JOINED, roomId, player.getId(), player.getName(), player.getScore());
+    }
+
+    public static ScoreChangedEvent scored(String roomId, String playerId, long change) {
+        return new ScoreChangedEvent(Kind.SCORED, roomId, playerId, null, change);
+    }
+
+    public static ScoreChangedEvent left(String roomId, String playerId) {
+        return new ScoreChangedEvent(Kind.LEFT, roomId, playerId, null, 0);
+    }
+
+    public static ScoreChangedEvent ended(String roomId) {
+        return new ScoreChangedEvent(Kind.ENDED, roomId, null, null, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoreChangedEvent{kind=" + kind + ", roomId=" + roomId + ", playerId=" + playerId + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,34 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+/**
+ * A player's place on a tournament leaderboard. Players with the same score share a rank.
+ */
+public class Standing {
+    private final int rank;
+    private final String playerId;
+    private final String name;
+    private final long score;
+
+    public Standing(int rank, String playerId, String name, long score) {
+        this.rank = rank;
+        this.playerId = playerId;
+        this.name = name;
+        this.score = score;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getScore() {
+        return score;
+    }
+}
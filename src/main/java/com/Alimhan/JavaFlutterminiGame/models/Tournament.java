@@ -0,0 +1,50 @@
+package com.Alimhan.JavaFlutterminiGame.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Group of rooms played as one league, ranked on a shared leaderboard
+ */
+@Getter
+@Setter
+public class Tournament {
+    private String id;
+    private String name;
+    private List<String> roomIds = new ArrayList<>();
+
+    public Tournament() {}
+
+    public Tournament(String id, String name, List<String> roomIds) {
+        this.id = id;
+        this.name = name;
+        this.roomIds = roomIds;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getRoomIds() {
+        return roomIds;
+    }
+
+    public void setRoomIds(List<String> roomIds) {
+        this.roomIds = roomIds;
+    }
+}
@@ -0,0 +1,156 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Drops repeated buzzer presses from the same player before they reach the store. Every player
+ * in a room gets a token bucket; a press without a token is throttled. How a player's last
+ * handled press was answered is kept so a throttled repeat can get the same answer.
+ *
+ * Buckets that have refilled are swept away periodically, so players who stop pressing
+ * without leaving don't hold on to memory.
+ */
+@Service
+public class BuzzerRateLimiter {
+    private static final int BURST = 1;
+    private static final long REFILL_NANOS = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final long SWEEP_INTERVAL_MS = 30_000;
+
+    /**
+     * How a handled press was answered
+     */
+    public enum Outcome { ACCEPTED, FAILED }
+
+    private final Map<String, Map<String, TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+    private final Counter accepted;
+    private final Counter throttled;
+
+    @Autowired
+    public BuzzerRateLimiter(MeterRegistry registry) {
+        this(registry, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime Clock the buckets refill by
+     */
+    BuzzerRateLimiter(MeterRegistry registry, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        accepted = Counter.builder("buzzer.presses").tag("result", "accepted").register(registry);
+        throttled = Counter.builder("buzzer.presses").tag("result", "throttled").register(registry);
+        registry.gauge("buzzer.limiter.players", buckets,
+                rooms -> rooms.values().stream().mapToInt(Map::size).sum());
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "buzzer-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a token for a press
+     * @return true if the press should be handled, false if it is a repeat to discard
+     */
+    public boolean tryPress(String roomId, String playerId) {
+        Map<String, TokenBucket> room = buckets.get(roomId);
+        if (room == null) room = buckets.computeIfAbsent(roomId, id -> new ConcurrentHashMap<>());
+
+        long now = nanoTime.getAsLong();
+        TokenBucket bucket = room.get(playerId);
+        if (bucket == null) bucket = room.computeIfAbsent(playerId, id -> new TokenBucket(now));
+
+        if (bucket.tryTake(now)) {
+            bucket.lastOutcome = null;   // until this press is answered
+            accepted.increment();
+            return true;
+        }
+        throttled.increment();
+        return false;
+    }
+
+    /**
+     * Keeps the answer given to a handled press, for throttled repeats of it
+     */
+    public void remember(String roomId, String playerId, Outcome outcome) {
+        if (roomId == null || playerId == null) return;
+
+        Map<String, TokenBucket> room = buckets.get(roomId);
+        TokenBucket bucket = room == null ? null : room.get(playerId);
+        if (bucket != null) bucket.lastOutcome = outcome;
+    }
+
+    /**
+     * @return The answer to the player's last handled press, or null if there is none
+     */
+    public Outcome lastOutcome(String roomId, String playerId) {
+        Map<String, TokenBucket> room = buckets.get(roomId);
+        TokenBucket bucket = room == null ? null : room.get(playerId);
+        return bucket == null ? null : bucket.lastOutcome;
+    }
+
+    /**
+     * Drops buckets that are full again; a new bucket would behave the same
+     */
+    void sweep() {
+        long now = nanoTime.getAsLong();
+        buckets.forEach((roomId, room) -> {
+            room.values().removeIf(bucket -> bucket.isFull(now));
+            if (room.isEmpty()) buckets.remove(roomId, room);
+        });
+    }
+
+    /**
+     * Forgets a player who left the room
+     */
+    public void evict(String roomId, String playerId) {
+        Map<String, TokenBucket> room = buckets.get(roomId);
+        if (room == null) return;
+
+        room.remove(playerId);
+        if (room.isEmpty()) buckets.remove(roomId, room);
+    }
+
+    /**
+     * Forgets every player of a deleted room
+     */
+    public void evictRoom(String roomId) {
+        buckets.remove(roomId);
+    }
+
+    /**
+     * Token bucket kept as the time at which the next token is free (the virtual scheduling form),
+     * so a press is a single compare-and-set with no separate token count or lock.
+     */
+    private static final class TokenBucket {
+        private final AtomicLong nextFree;
+        private volatile Outcome lastOutcome;
+
+        TokenBucket(long now) {
+            nextFree = new AtomicLong(now);
+        }
+
+        boolean tryTake(long now) {
+            while (true) {
+                long next = nextFree.get();
+                long start = next - now > 0 ? next : now;
+                if (start - now > (BURST - 1) * REFILL_NANOS) return false;
+                if (nextFree.compareAndSet(next, start + REFILL_NANOS)) return true;
+            }
+        }
+
+        boolean isFull(long now) {
+            return nextFree.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV one record at a time. Supports quoted fields with doubled quotes and line breaks
+ * inside them, so question text can contain commas and newlines.
+ */
+class CsvRecordReader {
+    private final BufferedReader in;
+
+    CsvRecordReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return Fields of the next record, or null at the end of the input
+     */
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+
+        int c;
+        while ((c = in.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int following = in.read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (following == -1) break;
+                        in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (!read) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,31 +1,150 @@
 package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
 import com.Alimhan.JavaFlutterminiGame.models.*;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
 import com.google.cloud.firestore.*;
-import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Service
 public class GameService {
-    private final Firestore db;
+    // Firestore allows 500 writes per commit; leave room for the room update
+    public static final int MAX_BATCH_SIZE = 400;
+    // Deleting a player takes two writes: keeping their result and the delete itself
+    private static final int PLAYERS_PER_DELETE_COMMIT = 249;
+    // How often rooms with waiting pollers are checked for changes made by other servers
+    private static final long REFRESH_INTERVAL_MS = 1_000;
+
+    private final FirestoreProvider firestore;
+    private final ResilientStore store;
+    private final QuestionService questionService;
+    private final RoomChangeTracker roomChanges;
+    private final BuzzerRateLimiter buzzerRateLimiter;
+    private final ApplicationEventPublisher events;
     private static final Logger logger = Logger.getLogger(GameService.class.getName());
 
-    public GameService() {
-        db = FirestoreClient.getFirestore();
+    public GameService(FirestoreProvider firestore, ResilientStore store, QuestionService questionService,
+                       RoomChangeTracker roomChanges, BuzzerRateLimiter buzzerRateLimiter, ApplicationEventPublisher events) {
+        this.firestore = firestore;
+        this.store = store;
+        this.questionService = questionService;
+        this.roomChanges = roomChanges;
+        this.buzzerRateLimiter = buzzerRateLimiter;
+        this.events = events;
+
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshWatchedRooms, REFRESH_INTERVAL_MS, REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Firestore db() {
+        return firestore.get();
     }
 
     private DocumentReference getRoomRef(String roomId) {
-        return db.collection("Rooms").document(roomId);
+        return db().collection("Rooms").document(roomId);
     }
 
     private CollectionReference getPlayersRef(String roomId) {
         return getRoomRef(roomId).collection("Players");
     }
 
+    /**
+     * Final scores of players no longer in a room, kept after they leave and after the room is deleted
+     */
+    private CollectionReference getResultsRef(String roomId) {
+        return db().collection("Results").document(roomId).collection("Players");
+    }
+
+    /**
+     * Adds a removed player's score to their result in the room, so leaving does not lose points
+     */
+    private void keepResult(WriteBatch batch, String roomId, DocumentSnapshot player) {
+        Long score = player.getLong("score");
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", player.getString("name"));
+        result.put("score", FieldValue.increment(score == null ? 0L : score));
+        batch.set(getResultsRef(roomId).document(player.getId()), result, SetOptions.merge());
+    }
+
     private CollectionReference getQuestionsRef() {
-        return db.collection("Questions");
+        return db().collection("Questions");
+    }
+
+    /**
+     * Value that bumps the room version, added to every write that changes a room
+     */
+    private static FieldValue nextVersion() {
+        return FieldValue.increment(1);
+    }
+
+    /**
+     * Records a change already written to the store
+     * @param changes Alternating room field names and new values
+     */
+    private void roomChanged(String roomId, Object... changes) {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (int i = 0; i < changes.length; i += 2) {
+            changed.put((String) changes[i], changes[i + 1]);
+        }
+        roomChanges.record(roomId, changed);
+    }
+
+    /**
+     * Whether a failed write failed because a document it updates does not exist
+     */
+    private static boolean isNotFound(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException api) return api.getStatusCode().getCode() == StatusCode.Code.NOT_FOUND;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a room. While the store is unavailable the last state this server knows is served
+     * instead, if there is one.
+     * @return The room, or null if it does not exist
+     */
+    private Room readRoom(String roomId) throws Exception {
+        try {
+            DocumentSnapshot doc = store.hedgedRead("room.get", () -> getRoomRef(roomId).get());
+            Room room = doc.exists() ? doc.toObject(Room.class) : null;
+            if (room == null) {
+                roomChanges.remove(roomId);
+            } else {
+                roomChanges.sync(room);
+            }
+            return room;
+        } catch (StoreUnavailableException e) {
+            Room known = roomChanges.lastKnown(roomId);
+            if (known == null) throw e;
+
+            store.recordStale("room.get");
+            logger.warning("Serving last known state of room " + roomId + ": " + e.getMessage());
+            return known;
+        }
+    }
+
+    /**
+     * Host of a room. The host never changes, so any state of the room known here will do and
+     * the store is only read for rooms this server hasn't seen.
+     * @return The host's ID, or null if the room does not exist
+     */
+    private String hostOf(String roomId) throws Exception {
+        Room known = roomChanges.lastKnown(roomId);
+        Room room = known != null ? known : readRoom(roomId);
+        return room == null || room.getHost() == null ? null : room.getHostId();
     }
 
     public String createRoom(Room newRoom) {
@@ -33,7 +152,9 @@ public class GameService {
 
         DocumentReference roomRef = getRoomRef(newRoom.getId());
         try {
-            roomRef.create(newRoom).get();
+            newRoom.setVersion(0);
+            store.write("room.create", () -> roomRef.create(newRoom));
+            roomChanges.sync(newRoom);
             logger.info("Room created: " + newRoom.getId());
             return newRoom.getId();
         } catch (Exception e) {
@@ -47,17 +168,24 @@ public class GameService {
             return null;
 
         try {
-            QuerySnapshot snapshot = db.collection("Rooms")
+            QuerySnapshot snapshot = store.read("room.query", () -> db().collection("Rooms")
                     .whereEqualTo("roomNumber", roomNumber)
                     .whereEqualTo("roomPassword", roomPassword)
                     .limit(1)
-                    .get().get();
+                    .get());
 
             if (snapshot.isEmpty()) return null;
 
             DocumentReference roomRef = snapshot.getDocuments().getFirst().getReference();
             DocumentReference playerRef = roomRef.collection("Players").document(player.getId());
-            playerRef.set(player, SetOptions.merge()).get();
+            store.write("player.join", () -> {
+                WriteBatch batch = db().batch();
+                batch.set(playerRef, player, SetOptions.merge());
+                batch.update(roomRef, "version", nextVersion());
+                return batch.commit();
+            });
+            roomChanged(roomRef.getId());
+            events.publishEvent(ScoreChangedEvent.joined(roomRef.getId(), player));
 
             return Map.of("room_id", roomRef.getId(), "player_id", player.getId());
         } catch (Exception e) {
@@ -66,21 +194,137 @@ public class GameService {
         }
     }
 
+    /**
+     * Adds many players to a room in one store commit. New players join with the given
+     * player data; players already in the room only get their name and avatar updated and
+     * keep their score.
+     * @param roomPassword Password of the room, or null if hostId is given
+     * @param hostId ID of the room's host, or null if roomPassword is given
+     * @return Room and IDs of the players added and updated, or null if the room does not
+     * exist or neither the password nor the host matches
+     */
+    public Map<String, Object> joinRoomBatch(String roomId, String roomPassword, String hostId, List<Player> players) throws Exception {
+        Room room = readRoom(roomId);
+        if (room == null) return null;
+        boolean allowed = (roomPassword != null && roomPassword.equals(room.getRoomPassword()))
+                || (hostId != null && hostId.equals(room.getHostId()));
+        if (!allowed) return null;
+
+        Map<String, Player> roster = new LinkedHashMap<>();
+        players.forEach(player -> roster.put(player.getId(), player));
+        DocumentReference[] refs = roster.keySet().stream().map(getPlayersRef(roomId)::document).toArray(DocumentReference[]::new);
+        Set<String> existing = new HashSet<>();
+        for (DocumentSnapshot doc : store.read("player.get.batch", () -> db().getAll(refs))) {
+            if (doc.exists()) existing.add(doc.getId());
+        }
+
+        DocumentReference roomRef = getRoomRef(roomId);
+        try {
+            store.write("player.join.batch", () -> {
+                WriteBatch batch = db().batch();
+                for (DocumentReference ref : refs) {
+                    Player player = roster.get(ref.getId());
+                    if (existing.contains(ref.getId())) {
+                        batch.set(ref, profile(player), SetOptions.merge());
+                    } else {
+                        batch.set(ref, player);
+                    }
+                }
+                batch.update(roomRef, "version", nextVersion());
+                return batch.commit();
+            });
+        } catch (ExecutionException e) {
+            if (isNotFound(e)) return null;
+            throw e;
+        }
+        roomChanged(roomId);
+
+        List<String> joined = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        roster.forEach((playerId, player) -> {
+            if (existing.contains(playerId)) {
+                updated.add(playerId);
+            } else {
+                joined.add(playerId);
+                events.publishEvent(ScoreChangedEvent.joined(roomId, player));
+            }
+        });
+        logger.info(joined.size() + " players joined and " + updated.size() + " updated in room " + roomId);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("roomId", roomId);
+        result.put("joined", joined.size());
+        result.put("playerIds", joined);
+        result.put("updatedPlayerIds", updated);
+        return result;
+    }
+
+    /**
+     * Fields of a player a repeated join may change; the score is left alone
+     */
+    private static Map<String, Object> profile(Player player) {
+        Map<String, Object> fields = new HashMap<>();
+        if (player.getName() != null) fields.put("name", player.getName());
+        if (player.getAvatar() != null) fields.put("avatar", player.getAvatar());
+        return fields;
+    }
+
+    /**
+     * Changes the scores of many players of a room in one store commit
+     * @param hostId ID of the room's host; nobody else may change scores
+     * @param changes Score change per player ID
+     * @return Room and the changes applied, or null if the room does not exist, hostId is not its
+     * host, or one of the players does not exist
+     */
+    public Map<String, Object> adjustScores(String roomId, String hostId, Map<String, Long> changes) throws Exception {
+        if (hostId == null || !hostId.equals(hostOf(roomId))) return null;
+
+        DocumentReference roomRef = getRoomRef(roomId);
+        try {
+            store.write("player.score.batch", () -> {
+                WriteBatch batch = db().batch();
+                changes.forEach((playerId, change) -> batch.update(roomRef.collection("Players").document(playerId), "score", FieldValue.increment(change)));
+                batch.update(roomRef, "version", nextVersion());
+                return batch.commit();
+            });
+        } catch (ExecutionException e) {
+            if (isNotFound(e)) return null;
+            throw e;
+        }
+        roomChanged(roomId);
+        changes.forEach((playerId, change) -> events.publishEvent(ScoreChangedEvent.scored(roomId, playerId, change)));
+        logger.info("Scores of " + changes.size() + " players adjusted in room " + roomId);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("roomId", roomId);
+        result.put("adjusted", changes.size());
+        result.put("changes", changes);
+        return result;
+    }
+
     public void exitRoom(String roomId, Player player) {
         if (roomId == null || player == null || player.getId() == null) return;
 
         DocumentReference roomRef = getRoomRef(roomId);
         try {
-            DocumentSnapshot roomDoc = roomRef.get().get();
-            if (!roomDoc.exists()) return;
-
-            Room room = roomDoc.toObject(Room.class);
+            Room room = readRoom(roomId);
             if (room == null) return;
 
             if (room.getHostId().equals(player.getId())) {
                 deleteRoom(roomId);
             } else {
-                getPlayersRef(roomId).document(player.getId()).delete().get();
+                DocumentReference playerRef = getPlayersRef(roomId).document(player.getId());
+                DocumentSnapshot current = store.read("player.get", playerRef::get);
+                store.write("player.exit", () -> {
+                    WriteBatch batch = db().batch();
+                    if (current.exists()) keepResult(batch, roomId, current);
+                    batch.delete(playerRef);
+                    batch.update(roomRef, "version", nextVersion());
+                    return batch.commit();
+                });
+                roomChanged(roomId);
+                buzzerRateLimiter.evict(roomId, player.getId());
+                events.publishEvent(ScoreChangedEvent.left(roomId, player.getId()));
             }
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error exiting room: " + e.getMessage(), e);
@@ -92,11 +336,30 @@ public class GameService {
 
         DocumentReference roomRef = getRoomRef(roomId);
         try {
-            Iterable<DocumentReference> players = getPlayersRef(roomId).listDocuments();
-            WriteBatch batch = db.batch();
-            players.forEach(batch::delete);
-            batch.delete(roomRef);
-            batch.commit().get();
+            // Only the names and scores are needed to keep the players' results
+            List<QueryDocumentSnapshot> players = store.read("player.query",
+                    () -> getPlayersRef(roomId).select("name", "score").get()).getDocuments();
+            // A player's result is kept in the commit that deletes them, so a delete cut short
+            // can be run again; the room goes in the last commit
+            int commits = Math.max(1, (players.size() + PLAYERS_PER_DELETE_COMMIT - 1) / PLAYERS_PER_DELETE_COMMIT);
+            for (int i = 0; i < commits; i++) {
+                List<QueryDocumentSnapshot> chunk = players.subList(i * PLAYERS_PER_DELETE_COMMIT,
+                        Math.min(players.size(), (i + 1) * PLAYERS_PER_DELETE_COMMIT));
+                boolean last = i == commits - 1;
+                store.write("room.delete", () -> {
+                    WriteBatch batch = db().batch();
+                    for (QueryDocumentSnapshot player : chunk) {
+                        keepResult(batch, roomId, player);
+                        batch.delete(player.getReference());
+                    }
+                    if (last) batch.delete(roomRef);
+                    return batch.commit();
+                });
+            }
+            questionService.evict(roomId);
+            roomChanges.remove(roomId);
+            buzzerRateLimiter.evictRoom(roomId);
+            events.publishEvent(ScoreChangedEvent.ended(roomId));
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error deleting room: " + e.getMessage(), e);
         }
@@ -106,32 +369,100 @@ public class GameService {
         if (roomId == null) return null;
 
         try {
-            DocumentSnapshot doc = getRoomRef(roomId).get().get();
-            return doc.exists() ? doc.toObject(Room.class) : null;
+            return readRoom(roomId);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error getting room: " + e.getMessage(), e);
             return null;
         }
     }
 
-    public String nextQuestion(String roomId, String currentQuestionId) {
+    /**
+     * Gets a room together with its resolved current question
+     * @param viewerId ID of the player asking; only the host sees the answer
+     */
+    public RoomState getRoomState(String roomId, String viewerId) {
+        Room room = getRoomById(roomId);
+        if (room == null) return null;
+
         try {
-            DocumentReference currentRef = db.collection("Questions").document(currentQuestionId);
-            DocumentSnapshot currentSnapshot = currentRef.get().get();
+            Question question = questionService.getQuestion(room.getCurrentQuestion());
+            questionService.warm(roomId, room.getCurrentQuestion());
+            return RoomState.forViewer(room, question, viewerId);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error resolving current question: " + e.getMessage(), e);
+            return new RoomState(room, null);
+        }
+    }
+
+    /**
+     * @return Version of the room as known to this server, or null if it has to be read from the
+     * store because it is unknown here or may have been changed by another server
+     */
+    public Long getRoomVersion(String roomId) {
+        if (roomId == null || !roomChanges.isFresh(roomId)) return null;
+        return roomChanges.version(roomId);
+    }
+
+    /**
+     * Gets the fields of a room that changed after the given version
+     * @param viewerId ID of the player asking; only the host sees the answer
+     * @return The changes, possibly none, or null if the room does not exist
+     */
+    public RoomDelta getRoomChanges(String roomId, long sinceVersion, String viewerId) {
+        if (roomId == null) return null;
 
-            Query query = db.collection("Questions")
-                    .orderBy(FieldPath.documentId())
-                    .startAfter(currentSnapshot)
-                    .limit(1);
+        // Another server may have changed the room since it was last read here
+        if (!roomChanges.isFresh(roomId) && getRoomById(roomId) == null) return null;
+        RoomDelta delta = roomChanges.changesSince(roomId, sinceVersion);
+        if (delta == null) return null;
+
+        if (delta.touchesQuestion()) {
+            String questionId = delta.isFull() ? delta.getRoom().getCurrentQuestion() : (String) delta.getChanges().get("currentQuestion");
+            try {
+                Question question = questionService.getQuestion(questionId);
+                Room room = delta.isFull() ? delta.getRoom() : roomChanges.lastKnown(roomId);
+                if (question != null && room != null) delta.setQuestion(RoomState.forViewer(room, question, viewerId).getQuestion());
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error resolving current question: " + e.getMessage(), e);
+            }
+        }
+        return delta;
+    }
 
-            List<QueryDocumentSnapshot> docs = query.get().get().getDocuments();
+    /**
+     * Calls back once the room changes after the given version
+     * @return false if it already did, or the room is not known here
+     */
+    public boolean awaitRoomChange(String roomId, long sinceVersion, Runnable onChange) {
+        return roomChanges.await(roomId, sinceVersion, onChange);
+    }
+
+    public void cancelRoomChangeWait(String roomId, Runnable onChange) {
+        roomChanges.cancel(roomId, onChange);
+    }
 
-            String nextId = docs.isEmpty() ?
-                    db.collection("Questions").orderBy(FieldPath.documentId()).limit(1).get().get().getDocuments().get(0).getId()
-                    : docs.getFirst().getId();
+    /**
+     * Reads rooms that have waiting pollers and weren't read lately, so a change made by
+     * another server wakes them
+     */
+    private void refreshWatchedRooms() {
+        for (String roomId : roomChanges.staleWatched()) {
+            try {
+                readRoom(roomId);
+            } catch (Exception e) {
+                logger.fine("Could not refresh room " + roomId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public String nextQuestion(String roomId, String currentQuestionId) {
+        try {
+            Question next = questionService.next(roomId, currentQuestionId);
+            if (next == null) return null;
 
-            getRoomRef(roomId).update("currentQuestion", nextId).get();
-            return nextId;
+            store.write("room.update", () -> getRoomRef(roomId).update("currentQuestion", next.getId(), "version", nextVersion()));
+            roomChanged(roomId, "currentQuestion", next.getId());
+            return next.getId();
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error fetching next question", e);
             return null;
@@ -143,19 +474,20 @@ public class GameService {
 
         try {
             DocumentReference roomRef = getRoomRef(roomId);
-            DocumentSnapshot roomSnapshot = roomRef.get().get();
-            if (!roomSnapshot.exists()) {
+            Room room = readRoom(roomId);
+            if (room == null) {
                 logger.warning("Room not found: " + roomId);
                 return;
             }
 
-            String currentFirstBuzzer = roomSnapshot.getString("firstBuzzer");
+            String currentFirstBuzzer = room.getFirstBuzzer();
             if (currentFirstBuzzer != null) {
                 logger.warning("First buzzer already set for room: " + roomId + " to player: " + currentFirstBuzzer);
                 return;
             }
 
-            roomRef.update("firstBuzzer", playerId, "buzzingOpen", true);
+            store.write("room.update", () -> roomRef.update("firstBuzzer", playerId, "buzzingOpen", true, "version", nextVersion()));
+            roomChanged(roomId, "firstBuzzer", playerId, "buzzingOpen", true);
             logger.info("First buzzer set to player: " + playerId);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error setting first buzzer: " + e.getMessage(), e);
@@ -166,46 +498,10 @@ public class GameService {
         if (roomId == null || questionId == null) return;
 
         try {
-            // Get room document to retrieve firstBuzzer
-            DocumentReference roomRef = getRoomRef(roomId);
-            DocumentSnapshot roomSnapshot = roomRef.get().get();
-            if (!roomSnapshot.exists()) {
-                logger.warning("Room not found: " + roomId);
-                return;
-            }
-
-            String playerId = roomSnapshot.getString("firstBuzzer");
-            if (playerId == null) {
-                logger.warning("No first buzzer set for room: " + roomId);
-                return;
+            Map<String, Object> result = judge(roomId, questionId, true, false);
+            if (result != null && result.containsKey("playerId")) {
+                logger.info("Buzzing reset and score updated for player: " + result.get("playerId") + " with +" + result.get("scoreChange"));
             }
-
-            // Get question data
-            DocumentReference questionRef = db.collection("Questions").document(questionId);
-            DocumentSnapshot questionSnapshot = questionRef.get().get();
-
-            if (!questionSnapshot.exists()) {
-                logger.warning("Question not found: " + questionId);
-                return;
-            }
-
-            Long questionScore = questionSnapshot.getLong("score");
-            if (questionScore == null) questionScore = 0L;
-
-            // Get player data and update score
-            DocumentReference playerRef = getRoomRef(roomId).collection("Players").document(playerId);
-            DocumentSnapshot playerSnapshot = playerRef.get().get();
-
-            Long currentScore = playerSnapshot.getLong("score");
-            if (currentScore == null) currentScore = 0L;
-
-            long newScore = currentScore + questionScore;
-            playerRef.update("score", newScore).get();
-
-            // Reset buzzing flags
-            roomRef.update("buzzingOpen", false, "firstBuzzer", null).get();
-            logger.info("Buzzing reset and score updated for player: " + playerId + " with +" + questionScore);
-
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error resetting buzzing: " + e.getMessage(), e);
         }
@@ -215,57 +511,80 @@ public class GameService {
         if (roomId == null || questionId == null) return;
 
         try {
-            // Get room document to retrieve firstBuzzer
-            DocumentReference roomRef = getRoomRef(roomId);
-            DocumentSnapshot roomSnapshot = roomRef.get().get();
-            if (!roomSnapshot.exists()) {
-                logger.warning("Room not found: " + roomId);
-                return;
-            }
-
-            String playerId = roomSnapshot.getString("firstBuzzer");
-            if (playerId == null) {
-                logger.warning("No first buzzer set for room: " + roomId);
-                return;
+            Map<String, Object> result = judge(roomId, questionId, false, false);
+            if (result != null && result.containsKey("playerId")) {
+                logger.info("Buzzing cancelled and score updated for player: " + result.get("playerId") + " with " + result.get("scoreChange"));
             }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error cancelling buzzing: " + e.getMessage(), e);
+        }
+    }
 
-            // Get question data
-            DocumentReference questionRef = db.collection("Questions").document(questionId);
-            DocumentSnapshot questionSnapshot = questionRef.get().get();
+    /**
+     * Scores the first buzzer's answer and reopens buzzing, optionally moving the room to the
+     * next question, all in one store commit
+     * @param questionId Question that was answered, the room's current one if null
+     * @param correct Add the question's score to the first buzzer if true, deduct it if false
+     * @param advance Also move the room to the question after the answered one
+     * @return What was done, or null if the room or question does not exist
+     */
+    public Map<String, Object> judge(String roomId, String questionId, boolean correct, boolean advance) throws Exception {
+        Room room = readRoom(roomId);
+        if (room == null) {
+            logger.warning("Room not found: " + roomId);
+            return null;
+        }
 
-            if (!questionSnapshot.exists()) {
-                logger.warning("Question not found: " + questionId);
-                return;
+        String answered = questionId != null ? questionId : room.getCurrentQuestion();
+        String playerId = room.getFirstBuzzer();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("roomId", roomId);
+        result.put("questionId", answered);
+
+        long change = 0;
+        if (playerId != null) {
+            Question question = questionService.getQuestion(answered);
+            if (question == null) {
+                logger.warning("Question not found: " + answered);
+                return null;
             }
+            change = correct ? question.getScore() : -question.getScore();
+            result.put("playerId", playerId);
+            result.put("scoreChange", change);
+        } else if (!advance) {
+            logger.warning("No first buzzer set for room: " + roomId);
+            return result;
+        }
 
-            Long questionScore = questionSnapshot.getLong("score");
-            if (questionScore == null) questionScore = 0L;
-
-            // Get player data and update score
-            DocumentReference playerRef = getRoomRef(roomId).collection("Players").document(playerId);
-            DocumentSnapshot playerSnapshot = playerRef.get().get();
-
-            Long currentScore = playerSnapshot.getLong("score");
-            if (currentScore == null) currentScore = 0L;
-
-            long newScore = currentScore - questionScore;
-            playerRef.update("score", newScore).get();
+        Question next = advance ? questionService.next(roomId, answered) : null;
+        if (next != null) result.put("nextQuestionId", next.getId());
 
-            // Reset buzzing flags
-            roomRef.update("buzzingOpen", false, "firstBuzzer", null).get();
-            logger.info("Buzzing cancelled and score updated for player: " + playerId + " with -" + questionScore);
+        Map<String, Object> roomUpdate = new HashMap<>();
+        roomUpdate.put("buzzingOpen", false);
+        roomUpdate.put("firstBuzzer", null);
+        if (next != null) roomUpdate.put("currentQuestion", next.getId());
+        roomUpdate.put("version", nextVersion());
 
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error cancelling buzzing: " + e.getMessage(), e);
-        }
+        DocumentReference roomRef = getRoomRef(roomId);
+        long scoreChange = change;
+        store.write("room.judge", () -> {
+            WriteBatch batch = db().batch();
+            if (playerId != null) batch.update(roomRef.collection("Players").document(playerId), "score", FieldValue.increment(scoreChange));
+            batch.update(roomRef, roomUpdate);
+            return batch.commit();
+        });
+
+        if (next != null) roomChanged(roomId, "buzzingOpen", false, "firstBuzzer", null, "currentQuestion", next.getId());
+        else roomChanged(roomId, "buzzingOpen", false, "firstBuzzer", null);
+        if (playerId != null) events.publishEvent(ScoreChangedEvent.scored(roomId, playerId, change));
+        return result;
     }
 
     public void createFinalScoreBoard(String roomId) {
         try {
-            QuerySnapshot playersSnapshot = getPlayersRef(roomId)
+            QuerySnapshot playersSnapshot = store.read("player.query", () -> getPlayersRef(roomId)
                     .orderBy("score", Query.Direction.DESCENDING)
-                    .get()
-                    .get();
+                    .get());
 
             if (playersSnapshot.isEmpty()) {
                 logger.warning("No players found in room: " + roomId);
@@ -284,8 +603,10 @@ public class GameService {
             finalScoreboard.put("score", 0);
             finalScoreboard.put("answer", "Final Scoreboard");
             DocumentReference scoreboard = getQuestionsRef().document();
-            scoreboard.set(finalScoreboard).get();
-            getRoomRef(roomId).update("currentQuestion", scoreboard.getId()).get();
+            store.write("question.create", () -> scoreboard.set(finalScoreboard));
+            questionService.put(new Question(scoreboard.getId(), text, "Final Scoreboard", 0));
+            store.write("room.update", () -> getRoomRef(roomId).update("currentQuestion", scoreboard.getId(), "version", nextVersion()));
+            roomChanged(roomId, "currentQuestion", scoreboard.getId());
             logger.info("Final scoreboard created for room: " + roomId);
 
         } catch (Exception e) {
@@ -0,0 +1,51 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.models.ImportReport;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * Imports question packs from the command line and exits:
+ * java -jar app.jar --spring.main.web-application-type=none --import-questions=pack.csv
+ * The option can be repeated; each pack is named after its file. The exit code is 1 if a pack
+ * could not be read or written completely.
+ */
+@Component
+public class QuestionImportCommand implements ApplicationRunner {
+    private static final String OPTION = "import-questions";
+
+    private final QuestionImportService importService;
+    private final ConfigurableApplicationContext context;
+    private static final Logger logger = Logger.getLogger(QuestionImportCommand.class.getName());
+
+    public QuestionImportCommand(QuestionImportService importService, ConfigurableApplicationContext context) {
+        this.importService = importService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(OPTION)) return;
+
+        boolean allImported = true;
+        for (String file : args.getOptionValues(OPTION)) {
+            Path path = Path.of(file);
+            String packName = path.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            try (InputStream pack = Files.newInputStream(path)) {
+                ImportReport report = importService.importPack(pack, QuestionImportService.Format.detect(null, file), packName, null);
+                logger.info(file + ": " + report);
+                report.getErrors().forEach(error -> logger.warning(file + ": " + error));
+                allImported &= report.isSuccessful();
+            }
+        }
+
+        int exitCode = allImported ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
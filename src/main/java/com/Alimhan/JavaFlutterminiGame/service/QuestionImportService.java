@@ -0,0 +1,357 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.models.ImportReport;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.firestore.*;
+import org.springframework.stereotype.Service;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports question packs into the Questions collection. Packs are parsed record by record as
+ * they stream in and written in parallel batches, so a pack never has to fit in memory.
+ *
+ * A question's document ID is the pack's name followed by its record number, so the game,
+ * which plays questions in document ID order, plays a pack in the order it was written. Each
+ * question also records the hash of its content, and QuestionHashes/{hash} points at the
+ * question holding it. That makes duplicates within a pack easy to drop and re-running a pack,
+ * under any name, a no-op: questions already in the store are skipped without being written again.
+ * Questions are created, never overwritten, so a different pack imported under a name already
+ * in use fails for the questions whose IDs are taken instead of replacing them.
+ */
+@Service
+public class QuestionImportService {
+    private static final int BATCH_SIZE = 200;          // two writes per question; Firestore allows 500 per batch
+    private static final int PARALLEL_BATCHES = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 250;
+    private static final int KEPT_JOBS = 50;
+
+    public enum Format {
+        CSV, JSON;
+
+        /**
+         * @param format Explicit format, may be null
+         * @param hint Content type or file name to guess from when no format is given
+         */
+        public static Format detect(String format, String hint) {
+            if (format != null && !format.isBlank()) return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            return hint != null && hint.toLowerCase(Locale.ROOT).contains("csv") ? CSV : JSON;
+        }
+    }
+
+    private final FirestoreProvider firestore;
+    private final ObjectMapper objectMapper;
+    private static final Logger logger = Logger.getLogger(QuestionImportService.class.getName());
+
+    private final Map<String, ImportReport> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<String, ImportReport>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ImportReport> eldest) {
+                    return size() > KEPT_JOBS;
+                }
+            });
+    private final ExecutorService writers = Executors.newFixedThreadPool(PARALLEL_BATCHES, runnable -> {
+        Thread thread = new Thread(runnable, "question-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public QuestionImportService(FirestoreProvider firestore, ObjectMapper objectMapper) {
+        this.firestore = firestore;
+        this.objectMapper = objectMapper;
+    }
+
+    private CollectionReference getQuestionsRef() {
+        return firestore.get().collection("Questions");
+    }
+
+    private CollectionReference getHashesRef() {
+        return firestore.get().collection("QuestionHashes");
+    }
+
+    /**
+     * @return Report of a running or recently finished import, or null
+     */
+    public ImportReport getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Imports a question pack, returning once every batch has been written or given up on
+     * @param packName Name the pack's question IDs start with, or null to name it after the
+     * time of the import
+     * @param jobId ID to follow the import's progress under, or null to generate one
+     */
+    public ImportReport importPack(InputStream pack, Format format, String packName, String jobId) {
+        ImportReport report = new ImportReport(jobId != null ? jobId : UUID.randomUUID().toString(), format.name().toLowerCase(Locale.ROOT));
+        jobs.put(report.getJobId(), report);
+        String prefix = idPrefix(packName);
+        logger.info("Starting " + format + " question import " + report.getJobId() + " as pack " + prefix);
+
+        Semaphore permits = new Semaphore(PARALLEL_BATCHES);
+        Set<String> seen = new HashSet<>();
+        List<PendingQuestion> batch = new ArrayList<>(BATCH_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(pack, StandardCharsets.UTF_8))) {
+            RecordHandler handler = record -> {
+                report.parsed();
+                String error = validate(record);
+                if (error != null) {
+                    report.invalid(record.number(), error);
+                    return;
+                }
+
+                PendingQuestion question = toPending(prefix, record);
+                if (!seen.add(question.hash())) {
+                    report.duplicate();
+                    return;
+                }
+
+                batch.add(question);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(new ArrayList<>(batch), report, permits);
+                    batch.clear();
+                }
+            };
+
+            if (format == Format.CSV) readCsv(reader, handler);
+            else readJson(reader, handler);
+
+            if (!batch.isEmpty()) submit(new ArrayList<>(batch), report, permits);
+            awaitWrites(permits);
+            report.finish();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error importing questions: " + e.getMessage(), e);
+            report.abort(e.getMessage());
+        } finally {
+            awaitWrites(permits);
+        }
+
+        logger.info("Finished question import: " + report);
+        return report;
+    }
+
+    private void readCsv(BufferedReader reader, RecordHandler handler) throws Exception {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        if (header == null) return;
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("text", "answer", "score")) {
+            if (!columns.containsKey(required)) throw new IllegalArgumentException("CSV header has no '" + required + "' column");
+        }
+
+        long number = 0;
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            if (fields.size() == 1 && fields.getFirst().isBlank()) continue;
+            number++;
+            handler.accept(new RawQuestion(number,
+                    field(fields, columns.get("text")),
+                    field(fields, columns.get("answer")),
+                    field(fields, columns.get("score"))));
+        }
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * Reads either a JSON array of questions or a stream of question objects, one at a time
+     */
+    private void readJson(BufferedReader reader, RecordHandler handler) throws Exception {
+        try (JsonParser parser = objectMapper.createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) token = parser.nextToken();
+
+            long number = 0;
+            while (token == JsonToken.START_OBJECT) {
+                JsonNode node = parser.readValueAsTree();
+                number++;
+                handler.accept(new RawQuestion(number,
+                        node.path("text").asText(null),
+                        node.path("answer").asText(null),
+                        node.path("score").asText(null)));
+                token = parser.nextToken();
+            }
+
+            if (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                throw new IllegalArgumentException("Expected a question object at record " + (number + 1) + " but found " + token);
+            }
+        }
+    }
+
+    private static String validate(RawQuestion record) {
+        if (record.text() == null || record.text().isBlank()) return "missing text";
+        if (record.answer() == null || record.answer().isBlank()) return "missing answer";
+        if (record.score() == null || record.score().isBlank()) return "missing score";
+        try {
+            if (Long.parseLong(record.score().trim()) < 0) return "score must not be negative";
+        } catch (NumberFormatException e) {
+            return "score is not a whole number: " + record.score();
+        }
+        return null;
+    }
+
+    /**
+     * Start of the pack's question IDs; document IDs can't contain slashes, so only letters,
+     * digits, '-' and '_' are kept
+     */
+    private static String idPrefix(String packName) {
+        String name = packName == null ? "" : packName.trim().replaceAll("[^A-Za-z0-9_-]+", "-");
+        if (name.isEmpty() || name.equals("-")) {
+            name = "pack-" + DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC).format(Instant.now());
+        }
+        return name;
+    }
+
+    private static PendingQuestion toPending(String prefix, RawQuestion record) {
+        String text = record.text().trim();
+        String answer = record.answer().trim();
+        long score = Long.parseLong(record.score().trim());
+        String hash = contentHash(text, answer, score);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", text);
+        data.put("answer", answer);
+        data.put("score", score);
+        data.put("contentHash", hash);
+        // Zero padded so IDs sort in record order
+        return new PendingQuestion(String.format("%s-%08d", prefix, record.number()), hash, data);
+    }
+
+    /**
+     * Hash of the question's content, ignoring case and spacing differences
+     */
+    private static String contentHash(String text, String answer, long score) {
+        String content = normalize(text) + "\n" + normalize(answer) + "\n" + score;
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void submit(List<PendingQuestion> batch, ImportReport report, Semaphore permits) throws InterruptedException {
+        // Waiting for a free slot keeps at most PARALLEL_BATCHES batches in memory
+        permits.acquire();
+        try {
+            writers.execute(() -> {
+                try {
+                    write(batch, report);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void write(List<PendingQuestion> batch, ImportReport report) {
+        Firestore db = firestore.get();
+        DocumentReference[] hashRefs = batch.stream()
+                .map(question -> getHashesRef().document(question.hash()))
+                .toArray(DocumentReference[]::new);
+        // Packs imported before the hash index used the hash as the question's ID; the
+        // question's own ID is looked up to tell a re-run from a pack name already in use
+        DocumentReference[] lookups = new DocumentReference[hashRefs.length * 3];
+        for (int i = 0; i < hashRefs.length; i++) {
+            lookups[3 * i] = hashRefs[i];
+            lookups[3 * i + 1] = getQuestionsRef().document(batch.get(i).hash());
+            lookups[3 * i + 2] = getQuestionsRef().document(batch.get(i).id());
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Set<String> existing = new HashSet<>();
+                for (DocumentSnapshot doc : db.getAll(lookups).get()) {
+                    if (doc.exists()) existing.add(doc.getId());
+                }
+
+                // Both documents are created, not set, so a concurrent import of the same
+                // question or under the same name fails this batch and the retry sorts it out
+                WriteBatch writeBatch = db.batch();
+                int writes = 0;
+                int skipped = 0;
+                List<String> taken = new ArrayList<>();
+                for (int i = 0; i < hashRefs.length; i++) {
+                    PendingQuestion question = batch.get(i);
+                    if (existing.contains(question.hash())) {
+                        skipped++;
+                    } else if (existing.contains(question.id())) {
+                        taken.add(question.id());
+                    } else {
+                        writeBatch.create(getQuestionsRef().document(question.id()), question.data());
+                        writeBatch.create(hashRefs[i], Map.of("questionId", question.id()));
+                        writes++;
+                    }
+                }
+                if (writes > 0) writeBatch.commit().get();
+
+                report.existing(skipped);
+                report.written(writes);
+                if (!taken.isEmpty()) {
+                    report.failed(taken.size(), taken.size() + " question IDs from " + taken.getFirst()
+                            + " are taken by another pack with the same name");
+                }
+                logger.info("Question import " + report.getJobId() + ": " + report.getParsed() + " parsed, "
+                        + report.getWritten() + " written, " + report.getExisting() + " already present");
+                return;
+            } catch (Exception e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    logger.log(Level.SEVERE, "Giving up on question batch after " + attempt + " attempts: " + e.getMessage(), e);
+                    report.failed(batch.size(), "batch of " + batch.size() + " failed: " + e.getMessage());
+                    return;
+                }
+                logger.warning("Question batch failed (attempt " + attempt + "), retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MS << (attempt - 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    report.failed(batch.size(), "batch of " + batch.size() + " interrupted");
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void awaitWrites(Semaphore permits) {
+        permits.acquireUninterruptibly(PARALLEL_BATCHES);
+        permits.release(PARALLEL_BATCHES);
+    }
+
+    @FunctionalInterface
+    private interface RecordHandler {
+        void accept(RawQuestion record) throws Exception;
+    }
+
+    private record RawQuestion(long number, String text, String answer, String score) {}
+
+    private record PendingQuestion(String id, String hash, Map<String, Object> data) {}
+}
@@ -0,0 +1,267 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.models.Question;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves questions for rooms. Question documents are cached by ID, and every room keeps a
+ * small buffer of the questions that follow its current one, so moving to the next question
+ * normally needs no store round trip.
+ *
+ * Questions can be edited in the store, so a cached one is read again once it is older than
+ * {@link #QUESTION_TTL_NANOS}. Buffers of rooms that haven't asked for a question for a while
+ * are swept away; that also covers rooms deleted by another server.
+ */
+@Service
+public class QuestionService {
+    private static final int PREFETCH_DEPTH = 5;
+    private static final int CACHE_SIZE = 1000;
+    private static final long QUESTION_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long PREFETCH_IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private final FirestoreProvider firestore;
+    private final ResilientStore store;
+    private static final Logger logger = Logger.getLogger(QuestionService.class.getName());
+
+    private final LongSupplier nanoTime;
+    private final Map<String, CachedQuestion> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedQuestion>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedQuestion> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    private final Map<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "question-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public QuestionService(FirestoreProvider firestore, ResilientStore store) {
+        this(firestore, store, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime Clock that cached questions and prefetch buffers age by
+     */
+    QuestionService(FirestoreProvider firestore, ResilientStore store, LongSupplier nanoTime) {
+        this.firestore = firestore;
+        this.store = store;
+        this.nanoTime = nanoTime;
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "question-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Firestore db() {
+        return firestore.get();
+    }
+
+    private CollectionReference getQuestionsRef() {
+        return db().collection("Questions");
+    }
+
+    /**
+     * Gets a question by ID, from the cache when it was read recently enough
+     * @return The question, or null if it does not exist
+     */
+    public Question getQuestion(String questionId) throws Exception {
+        if (questionId == null) return null;
+
+        CachedQuestion cached = cache.get(questionId);
+        if (cached != null && nanoTime.getAsLong() - cached.readAt() < QUESTION_TTL_NANOS) return cached.question();
+
+        DocumentSnapshot doc = store.hedgedRead("question.get", () -> getQuestionsRef().document(questionId).get());
+        if (!doc.exists()) {
+            cache.remove(questionId);
+            return null;
+        }
+
+        Question question = toQuestion(doc);
+        put(question);
+        return question;
+    }
+
+    /**
+     * Adds a question that was just written by this server to the cache
+     */
+    public void put(Question question) {
+        cache.put(question.getId(), new CachedQuestion(question, nanoTime.getAsLong()));
+    }
+
+    /**
+     * Gets the question that follows the current one in the room's sequence. Served from the
+     * room's prefetch buffer when the buffer follows the same question, otherwise fetched.
+     * @return The next question, or null if there are no questions at all
+     */
+    public Question next(String roomId, String currentQuestionId) throws Exception {
+        Prefetch prefetch = prefetches.computeIfAbsent(roomId, id -> new Prefetch());
+        prefetch.lastUsed = nanoTime.getAsLong();
+
+        Question next;
+        synchronized (prefetch) {
+            next = prefetch.take(currentQuestionId);
+        }
+
+        if (next == null) {
+            List<Question> fetched = fetchAfter(currentQuestionId, PREFETCH_DEPTH + 1);
+            if (fetched.isEmpty()) return null;
+
+            next = fetched.getFirst();
+            synchronized (prefetch) {
+                prefetch.reset(next.getId(), fetched.subList(1, fetched.size()));
+            }
+        }
+
+        refillIfLow(prefetch);
+        return next;
+    }
+
+    /**
+     * Starts prefetching the questions after the room's current one in the background
+     */
+    public void warm(String roomId, String currentQuestionId) {
+        if (roomId == null || currentQuestionId == null) return;
+
+        Prefetch prefetch = prefetches.computeIfAbsent(roomId, id -> new Prefetch());
+        prefetch.lastUsed = nanoTime.getAsLong();
+        synchronized (prefetch) {
+            if (!currentQuestionId.equals(prefetch.anchor)) {
+                prefetch.reset(currentQuestionId, List.of());
+            }
+        }
+        refillIfLow(prefetch);
+    }
+
+    /**
+     * Drops the prefetch buffer of a room that no longer exists
+     */
+    public void evict(String roomId) {
+        if (roomId != null) prefetches.remove(roomId);
+    }
+
+    /**
+     * Drops the buffers of rooms that haven't asked for a question in {@link #PREFETCH_IDLE_NANOS}
+     */
+    void sweep() {
+        long now = nanoTime.getAsLong();
+        prefetches.values().removeIf(prefetch -> now - prefetch.lastUsed > PREFETCH_IDLE_NANOS);
+    }
+
+    /**
+     * @return Number of rooms with a prefetch buffer
+     */
+    int prefetchedRooms() {
+        return prefetches.size();
+    }
+
+    private void refillIfLow(Prefetch prefetch) {
+        String after;
+        long generation;
+        int missing;
+        synchronized (prefetch) {
+            missing = PREFETCH_DEPTH - prefetch.queue.size();
+            if (prefetch.refilling || prefetch.anchor == null || missing <= PREFETCH_DEPTH / 2) return;
+
+            prefetch.refilling = true;
+            after = prefetch.tail();
+            generation = prefetch.generation;
+        }
+
+        prefetcher.execute(() -> {
+            try {
+                List<Question> fetched = fetchAfter(after, missing);
+                synchronized (prefetch) {
+                    // The buffer was reset while we were fetching, these no longer follow it
+                    if (prefetch.generation == generation) prefetch.queue.addAll(fetched);
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error prefetching questions: " + e.getMessage(), e);
+            } finally {
+                synchronized (prefetch) {
+                    prefetch.refilling = false;
+                }
+            }
+        });
+    }
+
+    private List<Question> fetchAfter(String questionId, int count) throws Exception {
+        List<Question> questions = new ArrayList<>(count);
+        if (questionId == null) return questions;
+
+        List<QueryDocumentSnapshot> docs = store.read("question.query", () -> getQuestionsRef()
+                .orderBy(FieldPath.documentId())
+                .startAfter(questionId)
+                .limit(count)
+                .get()).getDocuments();
+        docs.forEach(doc -> questions.add(toQuestion(doc)));
+
+        if (questions.size() < count) {
+            // Past the last question the sequence starts over from the first one
+            int remaining = count - questions.size();
+            List<QueryDocumentSnapshot> wrapped = store.read("question.query", () -> getQuestionsRef()
+                    .orderBy(FieldPath.documentId())
+                    .limit(remaining)
+                    .get()).getDocuments();
+            wrapped.forEach(doc -> questions.add(toQuestion(doc)));
+        }
+
+        questions.forEach(this::put);
+        return questions;
+    }
+
+    private Question toQuestion(DocumentSnapshot doc) {
+        Long score = doc.getLong("score");
+        return new Question(doc.getId(), doc.getString("text"), doc.getString("answer"), score == null ? 0L : score);
+    }
+
+    private record CachedQuestion(Question question, long readAt) {}
+
+    /**
+     * Questions that follow {@code anchor} in a room's sequence
+     */
+    private static class Prefetch {
+        private volatile long lastUsed;
+        private String anchor;
+        private final Deque<Question> queue = new ArrayDeque<>();
+        private long generation;
+        private boolean refilling;
+
+        Question take(String currentQuestionId) {
+            if (currentQuestionId == null || !currentQuestionId.equals(anchor) || queue.isEmpty()) return null;
+
+            Question next = queue.pollFirst();
+            anchor = next.getId();
+            return next;
+        }
+
+        void reset(String anchor, List<Question> questions) {
+            this.anchor = anchor;
+            queue.clear();
+            queue.addAll(questions);
+            generation++;
+        }
+
+        String tail() {
+            return queue.isEmpty() ? anchor : queue.peekLast().getId();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Players ordered by score, highest first, in a treap where every node knows the size of its
+ * subtree. Updates and rank lookups take O(log n); the top N take O(log n + N).
+ */
+class RankedLeaderboard {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Long> scores = new HashMap<>();
+    private Node root;
+
+    /**
+     * Sets a player's total score, adding the player if needed
+     */
+    void put(String playerId, long score) {
+        lock.writeLock().lock();
+        try {
+            Long previous = scores.put(playerId, score);
+            if (previous != null) {
+                if (previous == score) return;
+                root = erase(root, previous, playerId);
+            }
+            Node[] parts = split(root, score, playerId);
+            root = merge(merge(parts[0], new Node(playerId, score)), parts[1]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String playerId) {
+        lock.writeLock().lock();
+        try {
+            Long previous = scores.remove(playerId);
+            if (previous != null) root = erase(root, previous, playerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Long score(String playerId) {
+        lock.readLock().lock();
+        try {
+            return scores.get(playerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 1 + the number of players with a higher score, or 0 if the player is not ranked
+     */
+    int rank(String playerId) {
+        lock.readLock().lock();
+        try {
+            Long score = scores.get(playerId);
+            return score == null ? 0 : countBefore(score, null) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls back with rank, player and score for the best {@code limit} players, best first
+     */
+    void top(int limit, RankVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            Deque<Node> path = new ArrayDeque<>();
+            Node node = root;
+            int position = 0;
+            int rank = 0;
+            long previousScore = 0;
+            while ((node != null || !path.isEmpty()) && position < limit) {
+                while (node != null) {
+                    path.push(node);
+                    node = node.left;
+                }
+                node = path.pop();
+                position++;
+                if (position == 1 || node.score != previousScore) rank = position;
+                previousScore = node.score;
+                visitor.visit(rank, node.playerId, node.score);
+                node = node.right;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return scores.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of every player's score
+     */
+    Map<String, Long> scores() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    interface RankVisitor {
+        void visit(int rank, String playerId, long score);
+    }
+
+    // Higher scores first, ties by player ID; a null ID sorts before every player with that score
+    private static int compare(long score, String playerId, Node node) {
+        if (score != node.score) return score > node.score ? -1 : 1;
+        if (playerId == null) return -1;
+        return playerId.compareTo(node.playerId);
+    }
+
+    private int countBefore(long score, String playerId) {
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int c = compare(score, playerId, node);
+            if (c == 0) return before + size(node.left);
+            if (c < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return before;
+    }
+
+    /**
+     * @return Nodes ordered before the key, and the rest
+     */
+    private static Node[] split(Node node, long score, String playerId) {
+        if (node == null) return new Node[]{null, null};
+
+        if (compare(score, playerId, node) > 0) {
+            Node[] parts = split(node.right, score, playerId);
+            node.right = parts[0];
+            node.update();
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, score, playerId);
+        node.left = parts[1];
+        node.update();
+        return new Node[]{parts[0], node};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node erase(Node node, long score, String playerId) {
+        if (node == null) return null;
+
+        int c = compare(score, playerId, node);
+        if (c == 0) return merge(node.left, node.right);
+        if (c < 0) node.left = erase(node.left, score, playerId);
+        else node.right = erase(node.right, score, playerId);
+        node.update();
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node {
+        private final String playerId;
+        private final long score;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        Node(String playerId, long score) {
+            this.playerId = playerId;
+            this.score = score;
+        }
+
+        void update() {
+            size = 1 + RankedLeaderboard.size(left) + RankedLeaderboard.size(right);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Guards calls to the store so a slow or failing store can't tie up request threads:
+ * <ul>
+ *     <li>every call has a deadline, after which it fails with {@link StoreUnavailableException}</li>
+ *     <li>hedged reads send a second copy of a read once the first is slower than the
+ *     operation's 95th percentile, and use whichever answers first</li>
+ *     <li>after repeated failures a circuit breaker opens: reads are refused right away, and
+ *     writes are queued and retried in the background once the store answers again</li>
+ * </ul>
+ * Calls are given as suppliers so they can be repeated; a write supplier must build its
+ * batch inside the supplier.
+ */
+@Service
+public class ResilientStore {
+    private static final long READ_DEADLINE_MS = 2_000;
+    private static final long WRITE_DEADLINE_MS = 5_000;
+    private static final Map<String, Long> DEADLINES_MS = Map.of(
+            "room.get", 1_500L,
+            "question.get", 1_500L,
+            "room.delete", 10_000L);
+
+    private static final int FAILURES_TO_OPEN = 5;
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int RETRY_QUEUE_CAPACITY = 1_000;
+    private static final int MAX_RETRIES = 5;
+    private static final long HEDGE_MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    // Store errors that say the request was wrong, not that the store is unwell
+    private static final Set<StatusCode.Code> CALLER_ERRORS = Set.of(
+            StatusCode.Code.ALREADY_EXISTS, StatusCode.Code.NOT_FOUND, StatusCode.Code.FAILED_PRECONDITION,
+            StatusCode.Code.INVALID_ARGUMENT, StatusCode.Code.PERMISSION_DENIED);
+    // Store errors after which a write is known not to have been applied, so sending it again is safe
+    private static final Set<StatusCode.Code> NOT_APPLIED = Set.of(
+            StatusCode.Code.UNAVAILABLE, StatusCode.Code.RESOURCE_EXHAUSTED, StatusCode.Code.ABORTED);
+
+    private static final Logger logger = Logger.getLogger(ResilientStore.class.getName());
+
+    private final MeterRegistry registry;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final CircuitBreaker breaker;
+    private final BlockingDeque<PendingWrite> retryQueue = new LinkedBlockingDeque<>(RETRY_QUEUE_CAPACITY);
+    private final Counter shedWrites;
+    private final Counter droppedQueueFull;
+    private final Counter droppedOutcomeUnknown;
+    private final Counter droppedFailed;
+
+    @Autowired
+    public ResilientStore(MeterRegistry registry) {
+        this(registry, OPEN_NANOS);
+    }
+
+    /**
+     * @param openNanos How long the breaker stays open before letting a trial call through
+     */
+    ResilientStore(MeterRegistry registry, long openNanos) {
+        this.registry = registry;
+        breaker = new CircuitBreaker(openNanos);
+        shedWrites = Counter.builder("store.writes.queued").register(registry);
+        droppedQueueFull = Counter.builder("store.writes.dropped").tag("reason", "queue-full").register(registry);
+        droppedOutcomeUnknown = Counter.builder("store.writes.dropped").tag("reason", "outcome-unknown").register(registry);
+        droppedFailed = Counter.builder("store.writes.dropped").tag("reason", "failed").register(registry);
+        registry.gauge("store.retry.queue", retryQueue, BlockingDeque::size);
+        registry.gauge("store.breaker.state", breaker, CircuitBreaker::state);
+
+        ScheduledExecutorService retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retrier.scheduleWithFixedDelay(this::drainRetryQueue, 500, 500, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads with a deadline
+     */
+    public <T> T read(String operation, Supplier<ApiFuture<T>> call) throws Exception {
+        Operation op = operation(operation);
+        refuseIfOpen(op);
+        return execute(op, call, false);
+    }
+
+    /**
+     * Reads with a deadline, sending a second copy of the read when the first one is slow
+     */
+    public <T> T hedgedRead(String operation, Supplier<ApiFuture<T>> call) throws Exception {
+        Operation op = operation(operation);
+        refuseIfOpen(op);
+        return execute(op, call, true);
+    }
+
+    /**
+     * Writes with a deadline. While the breaker is open the write is queued instead and this
+     * returns right away.
+     */
+    public <T> void write(String operation, Supplier<ApiFuture<T>> call) throws Exception {
+        Operation op = operation(operation);
+        if (!breaker.allowRequest()) {
+            shed(op, call);
+            return;
+        }
+        execute(op, call, false);
+    }
+
+    /**
+     * Counts a read that was answered from state kept on this server because the store was unavailable
+     */
+    public void recordStale(String operation) {
+        operation(operation).stale.increment();
+    }
+
+    /**
+     * Whether store calls are currently being refused
+     */
+    public boolean isOpen() {
+        return breaker.state() == CircuitBreaker.OPEN;
+    }
+
+    private void refuseIfOpen(Operation op) {
+        if (!breaker.allowRequest()) {
+            op.rejected.increment();
+            throw new StoreUnavailableException(op.name + " refused, store circuit is open");
+        }
+    }
+
+    /**
+     * Runs a call the breaker has already let through; every outcome is reported back to the
+     * breaker, so a half-open trial always ends
+     */
+    private <T> T execute(Operation op, Supplier<ApiFuture<T>> call, boolean hedge) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = hedge ? hedged(op, call) : await(call.get(), op.deadlineNanos);
+            long elapsed = System.nanoTime() - start;
+            op.record(elapsed);
+            op.success.increment();
+            breaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            op.timeout.increment();
+            breaker.onFailure();
+            throw new StoreUnavailableException(op.name + " timed out after " + TimeUnit.NANOSECONDS.toMillis(op.deadlineNanos) + " ms", e);
+        } catch (ExecutionException e) {
+            if (isCallerError(e)) {
+                breaker.onSuccess();
+            } else {
+                op.error.increment();
+                breaker.onFailure();
+            }
+            throw e;
+        } catch (Exception e) {
+            // Thrown before or while waiting on the store, e.g. for an invalid document path:
+            // says nothing about the store's health
+            breaker.onAbandoned();
+            throw e;
+        }
+    }
+
+    private <T> T hedged(Operation op, Supplier<ApiFuture<T>> call) throws Exception {
+        ApiFuture<T> first = call.get();
+        long hedgeDelay = op.hedgeDelayNanos();
+        if (hedgeDelay < 0 || hedgeDelay >= op.deadlineNanos) return await(first, op.deadlineNanos);
+
+        try {
+            return first.get(hedgeDelay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException slow) {
+            // fall through and race a second copy
+        }
+
+        op.hedges.increment();
+        ApiFuture<T> second = call.get();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (ApiFuture<T> attempt : Arrays.asList(first, second)) {
+            attempt.addListener(() -> {
+                try {
+                    winner.complete(attempt.get());
+                } catch (ExecutionException e) {
+                    if (failures.incrementAndGet() == 2) winner.completeExceptionally(e.getCause());
+                } catch (Exception e) {
+                    if (failures.incrementAndGet() == 2) winner.completeExceptionally(e);
+                }
+            }, Runnable::run);
+        }
+
+        try {
+            return winner.get(op.deadlineNanos - hedgeDelay, TimeUnit.NANOSECONDS);
+        } finally {
+            first.cancel(false);
+            second.cancel(false);
+        }
+    }
+
+    private static <T> T await(ApiFuture<T> future, long deadlineNanos) throws Exception {
+        try {
+            return future.get(deadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
+    private <T> void shed(Operation op, Supplier<ApiFuture<T>> call) {
+        if (retryQueue.offerLast(new PendingWrite(op, call::get))) {
+            shedWrites.increment();
+            logger.warning("Store circuit open, queued " + op.name + " for retry");
+        } else {
+            droppedQueueFull.increment();
+            logger.severe("Store retry queue full, dropped " + op.name);
+        }
+    }
+
+    /**
+     * Sends queued writes while the breaker lets calls through. A write is only sent again when
+     * the store said it was not applied; one that timed out or failed otherwise may have been
+     * applied, and increments must not be applied twice, so it is dropped.
+     */
+    private void drainRetryQueue() {
+        try {
+            PendingWrite write;
+            while ((write = retryQueue.peekFirst()) != null && breaker.allowRequest()) {
+                retryQueue.pollFirst();
+                try {
+                    await(write.call.get(), write.op.deadlineNanos);
+                    write.op.success.increment();
+                    breaker.onSuccess();
+                } catch (TimeoutException e) {
+                    write.op.timeout.increment();
+                    breaker.onFailure();
+                    droppedOutcomeUnknown.increment();
+                    logger.severe("Dropped queued " + write.op.name + ": timed out, it may or may not have been applied");
+                    return;
+                } catch (RuntimeException e) {
+                    breaker.onAbandoned();
+                    droppedFailed.increment();
+                    logger.log(Level.SEVERE, "Dropped queued " + write.op.name + ", it could not be sent", e);
+                    return;
+                } catch (Exception e) {
+                    if (isCallerError(e)) {
+                        breaker.onSuccess();
+                    } else {
+                        write.op.error.increment();
+                        breaker.onFailure();
+                    }
+                    if (hasCode(e, NOT_APPLIED) && ++write.attempts < MAX_RETRIES) {
+                        retryQueue.offerFirst(write);
+                    } else if (hasCode(e, NOT_APPLIED) || isCallerError(e)) {
+                        droppedFailed.increment();
+                        logger.log(Level.SEVERE, "Giving up on queued " + write.op.name + " after " + (write.attempts + 1) + " attempts", e);
+                    } else {
+                        droppedOutcomeUnknown.increment();
+                        logger.log(Level.SEVERE, "Dropped queued " + write.op.name + ", it may or may not have been applied", e);
+                    }
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Error draining store retry queue: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isCallerError(Throwable e) {
+        return hasCode(e, CALLER_ERRORS);
+    }
+
+    private static boolean hasCode(Throwable e, Set<StatusCode.Code> codes) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException api) return codes.contains(api.getStatusCode().getCode());
+        }
+        return false;
+    }
+
+    private Operation operation(String name) {
+        Operation op = operations.get(name);
+        return op != null ? op : operations.computeIfAbsent(name, n -> new Operation(n, registry));
+    }
+
+    /**
+     * Metrics and recent latencies of one kind of store call
+     */
+    private static class Operation {
+        private static final int SAMPLES = 256;
+        private static final int MIN_SAMPLES_TO_HEDGE = 50;
+        private static final int RECOMPUTE_EVERY = 32;
+
+        private final String name;
+        private final long deadlineNanos;
+        private final Timer latency;
+        private final Counter success;
+        private final Counter error;
+        private final Counter timeout;
+        private final Counter rejected;
+        private final Counter stale;
+        private final Counter hedges;
+        private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long p95 = -1;
+
+        Operation(String name, MeterRegistry registry) {
+            this.name = name;
+            long deadlineMs = DEADLINES_MS.getOrDefault(name, name.endsWith(".get") || name.endsWith(".query") ? READ_DEADLINE_MS : WRITE_DEADLINE_MS);
+            this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+            latency = Timer.builder("store.latency").tag("op", name).publishPercentiles(0.5, 0.95, 0.99).register(registry);
+            success = Counter.builder("store.calls").tag("op", name).tag("outcome", "success").register(registry);
+            error = Counter.builder("store.calls").tag("op", name).tag("outcome", "error").register(registry);
+            timeout = Counter.builder("store.calls").tag("op", name).tag("outcome", "timeout").register(registry);
+            rejected = Counter.builder("store.calls").tag("op", name).tag("outcome", "rejected").register(registry);
+            stale = Counter.builder("store.calls").tag("op", name).tag("outcome", "stale").register(registry);
+            hedges = Counter.builder("store.hedges").tag("op", name).register(registry);
+        }
+
+        void record(long nanos) {
+            latency.record(nanos, TimeUnit.NANOSECONDS);
+            long n = count.getAndIncrement();
+            samples.set((int) (n % SAMPLES), nanos);
+            if (n + 1 >= MIN_SAMPLES_TO_HEDGE && (n + 1) % RECOMPUTE_EVERY == 0) {
+                int filled = (int) Math.min(n + 1, SAMPLES);
+                long[] sorted = new long[filled];
+                for (int i = 0; i < filled; i++) sorted[i] = samples.get(i);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) (filled * 0.95) - 1];
+            }
+        }
+
+        /**
+         * @return How long to wait before hedging, or -1 while there are too few samples
+         */
+        long hedgeDelayNanos() {
+            long current = p95;
+            return current < 0 ? -1 : Math.max(current, HEDGE_MIN_DELAY_NANOS);
+        }
+    }
+
+    private static class PendingWrite {
+        private final Operation op;
+        private final Supplier<ApiFuture<?>> call;
+        private int attempts;
+
+        PendingWrite(Operation op, Supplier<ApiFuture<?>> call) {
+            this.op = op;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Opens after {@link #FAILURES_TO_OPEN} failures in a row. Once open for a while it lets a
+     * single trial call through; the trial's outcome closes or reopens it.
+     */
+    private static class CircuitBreaker {
+        static final int CLOSED = 0;
+        static final int OPEN = 1;
+        static final int HALF_OPEN = 2;
+
+        private final long openNanos;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean trialInFlight = new AtomicBoolean();
+        private volatile long openUntil;
+        private volatile boolean open;
+
+        CircuitBreaker(long openNanos) {
+            this.openNanos = openNanos;
+        }
+
+        boolean allowRequest() {
+            if (!open) return true;
+            if (System.nanoTime() - openUntil < 0) return false;
+            return trialInFlight.compareAndSet(false, true);
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            if (open) {
+                open = false;
+                trialInFlight.set(false);
+                logger.info("Store circuit closed");
+            }
+        }
+
+        void onFailure() {
+            if (consecutiveFailures.incrementAndGet() >= FAILURES_TO_OPEN || open) {
+                openUntil = System.nanoTime() + openNanos;
+                if (!open) logger.warning("Store circuit opened after " + FAILURES_TO_OPEN + " failures in a row");
+                open = true;
+                trialInFlight.set(false);
+            }
+        }
+
+        /**
+         * A call that never reached the store: frees the trial slot without judging the store
+         */
+        void onAbandoned() {
+            if (open) trialInFlight.set(false);
+        }
+
+        int state() {
+            if (!open) return CLOSED;
+            return System.nanoTime() - openUntil < 0 ? OPEN : HALF_OPEN;
+        }
+    }
+}
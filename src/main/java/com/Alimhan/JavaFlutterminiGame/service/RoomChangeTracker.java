@@ -0,0 +1,236 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.models.Room;
+import com.Alimhan.JavaFlutterminiGame.models.RoomDelta;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last known state and version of every room this server has seen, and which version
+ * last changed each field. Polling clients get the fields that changed since their version
+ * without a store read, and can wait here until the room changes.
+ *
+ * Versions recorded here stay in step with the store as long as changes go through this
+ * server; a newer version read from the store replaces what is known locally. Other servers
+ * can change a room too, so a room is only fresh for a while after it was last read from
+ * the store; after that callers should read it again before trusting the version.
+ */
+@Service
+public class RoomChangeTracker {
+    private static final long DEFAULT_FRESH_MS = 2_000;
+
+    private final Map<String, TrackedRoom> rooms = new ConcurrentHashMap<>();
+    private final long freshNanos;
+
+    public RoomChangeTracker() {
+        this(DEFAULT_FRESH_MS);
+    }
+
+    /**
+     * @param freshMillis How long a room read from the store is trusted to be current
+     */
+    public RoomChangeTracker(long freshMillis) {
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMillis);
+    }
+
+    /**
+     * Records the room as read from or written to the store
+     */
+    public void sync(Room room) {
+        if (room == null || room.getId() == null) return;
+
+        TrackedRoom tracked = rooms.computeIfAbsent(room.getId(), id -> new TrackedRoom(room));
+        List<Runnable> waiters;
+        synchronized (tracked) {
+            tracked.confirmedAt = System.nanoTime();
+            if (room.getVersion() <= tracked.room.getVersion()) return;
+
+            // Someone else changed the room; we don't know which fields, so start over from here
+            tracked.room = copy(room);
+            tracked.baseline = room.getVersion();
+            tracked.changedAt.clear();
+            waiters = tracked.takeWaiters();
+        }
+        waiters.forEach(Runnable::run);
+    }
+
+    /**
+     * Applies changes made to a room and bumps its version
+     * @param changes Changed room fields and their new values
+     */
+    public void record(String roomId, Map<String, Object> changes) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return;   // not seen yet, the next read will pick it up
+
+        List<Runnable> waiters;
+        synchronized (tracked) {
+            Room room = tracked.room;
+            long version = room.getVersion() + 1;
+            changes.forEach((field, value) -> {
+                apply(room, field, value);
+                tracked.changedAt.put(field, version);
+            });
+            room.setVersion(version);
+            waiters = tracked.takeWaiters();
+        }
+        waiters.forEach(Runnable::run);
+    }
+
+    /**
+     * Forgets a deleted room and wakes everyone waiting on it
+     */
+    public void remove(String roomId) {
+        if (roomId == null) return;
+
+        TrackedRoom tracked = rooms.remove(roomId);
+        if (tracked == null) return;
+
+        List<Runnable> waiters;
+        synchronized (tracked) {
+            waiters = tracked.takeWaiters();
+        }
+        waiters.forEach(Runnable::run);
+    }
+
+    /**
+     * @return Current version of the room, or null if the room is not known here
+     */
+    public Long version(String roomId) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return null;
+
+        synchronized (tracked) {
+            return tracked.room.getVersion();
+        }
+    }
+
+    /**
+     * @return Whether the room was read from the store recently enough to trust its version
+     */
+    public boolean isFresh(String roomId) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return false;
+
+        synchronized (tracked) {
+            return System.nanoTime() - tracked.confirmedAt < freshNanos;
+        }
+    }
+
+    /**
+     * @return Rooms someone is waiting on that are due to be read from the store again
+     */
+    public List<String> staleWatched() {
+        List<String> stale = new ArrayList<>();
+        long now = System.nanoTime();
+        rooms.forEach((roomId, tracked) -> {
+            synchronized (tracked) {
+                if (!tracked.waiters.isEmpty() && now - tracked.confirmedAt >= freshNanos) stale.add(roomId);
+            }
+        });
+        return stale;
+    }
+
+    /**
+     * @return Copy of the last known state of the room, or null if the room is not known here
+     */
+    public Room lastKnown(String roomId) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return null;
+
+        synchronized (tracked) {
+            return copy(tracked.room);
+        }
+    }
+
+    /**
+     * @return Fields changed after the given version, or null if the room is not known here
+     */
+    public RoomDelta changesSince(String roomId, long sinceVersion) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return null;
+
+        synchronized (tracked) {
+            Room room = tracked.room;
+            if (sinceVersion < tracked.baseline) return RoomDelta.full(copy(room));
+
+            Map<String, Object> changes = new LinkedHashMap<>();
+            tracked.changedAt.forEach((field, version) -> {
+                if (version > sinceVersion) changes.put(field, value(room, field));
+            });
+            return RoomDelta.changes(roomId, room.getVersion(), changes);
+        }
+    }
+
+    /**
+     * Registers a callback for the next change of the room, unless it already changed
+     * @return false if the room is already past the given version or not known here
+     */
+    public boolean await(String roomId, long sinceVersion, Runnable onChange) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return false;
+
+        synchronized (tracked) {
+            if (tracked.room.getVersion() > sinceVersion) return false;
+            tracked.waiters.add(onChange);
+            return true;
+        }
+    }
+
+    public void cancel(String roomId, Runnable onChange) {
+        TrackedRoom tracked = rooms.get(roomId);
+        if (tracked == null) return;
+
+        synchronized (tracked) {
+            tracked.waiters.remove(onChange);
+        }
+    }
+
+    private static void apply(Room room, String field, Object value) {
+        switch (field) {
+            case "buzzingOpen" -> room.setBuzzingOpen(Boolean.TRUE.equals(value));
+            case "firstBuzzer" -> room.setFirstBuzzer((String) value);
+            case "currentQuestion" -> room.setCurrentQuestion((String) value);
+            default -> throw new IllegalArgumentException("Untracked room field: " + field);
+        }
+    }
+
+    private static Object value(Room room, String field) {
+        return switch (field) {
+            case "buzzingOpen" -> room.isBuzzingOpen();
+            case "firstBuzzer" -> room.getFirstBuzzer();
+            case "currentQuestion" -> room.getCurrentQuestion();
+            default -> throw new IllegalArgumentException("Untracked room field: " + field);
+        };
+    }
+
+    private static Room copy(Room room) {
+        Room copy = new Room(room.getId(), room.getRoomNumber(), room.getRoomPassword(), room.getHost());
+        copy.setBuzzingOpen(room.isBuzzingOpen());
+        copy.setFirstBuzzer(room.getFirstBuzzer());
+        copy.setCurrentQuestion(room.getCurrentQuestion());
+        copy.setVersion(room.getVersion());
+        return copy;
+    }
+
+    private static class TrackedRoom {
+        private Room room;
+        private long baseline;
+        private long confirmedAt = System.nanoTime();
+        private final Map<String, Long> changedAt = new HashMap<>();
+        private final List<Runnable> waiters = new ArrayList<>();
+
+        TrackedRoom(Room room) {
+            this.room = copy(room);
+            this.baseline = room.getVersion();
+        }
+
+        List<Runnable> takeWaiters() {
+            if (waiters.isEmpty()) return List.of();
+
+            List<Runnable> taken = new ArrayList<>(waiters);
+            waiters.clear();
+            return taken;
+        }
+    }
+}
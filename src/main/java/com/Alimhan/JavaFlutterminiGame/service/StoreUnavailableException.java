@@ -0,0 +1,14 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+
+/**
+ * Thrown when a store call is refused because the circuit breaker is open, or ran past its deadline
+ */
+public class StoreUnavailableException extends RuntimeException {
+    public StoreUnavailableException(String message) {
+        super(message);
+    }
+
+    public StoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
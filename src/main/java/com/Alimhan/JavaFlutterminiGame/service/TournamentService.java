@@ -0,0 +1,352 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.models.*;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Tournaments and their leaderboards. A leaderboard is kept up to date from score change
+ * events: each room keeps its players' scores, the tournament sums them per player and
+ * ranks the totals, so no room has to be read to answer a ranking query.
+ *
+ * Points are never taken back: a player who leaves, or whose room is deleted, keeps the
+ * score they had, and the game keeps it in the room's results.
+ *
+ * Leaderboards live in memory. A tournament is rebuilt from its rooms' players and results
+ * the first time it's used after a restart. Score change events only reach the server the
+ * game runs on, so loaded leaderboards are also rebuilt from the store every
+ * {@link #REBUILD_INTERVAL_MS}; games played on other servers show up within that time.
+ */
+@Service
+public class TournamentService {
+    private static final int RECOMPUTE_THREADS = 8;
+    // How often loaded leaderboards are rebuilt to pick up games played on other servers
+    private static final long REBUILD_INTERVAL_MS = 60_000;
+
+    private final FirestoreProvider firestore;
+    private static final Logger logger = Logger.getLogger(TournamentService.class.getName());
+
+    private final Map<String, Tournament> tournaments = new ConcurrentHashMap<>();
+    private final Map<String, LeagueTable> tables = new ConcurrentHashMap<>();
+    private final Map<String, String> roomTournaments = new ConcurrentHashMap<>();
+    private final ExecutorService recomputers = Executors.newFixedThreadPool(RECOMPUTE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "tournament-recompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TournamentService(FirestoreProvider firestore) {
+        this.firestore = firestore;
+        ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tournament-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuildLoaded, REBUILD_INTERVAL_MS, REBUILD_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Firestore db() {
+        return firestore.get();
+    }
+
+    private DocumentReference getTournamentRef(String tournamentId) {
+        return db().collection("Tournaments").document(tournamentId);
+    }
+
+    private CollectionReference getPlayersRef(String roomId) {
+        return db().collection("Rooms").document(roomId).collection("Players");
+    }
+
+    private CollectionReference getResultsRef(String roomId) {
+        return db().collection("Results").document(roomId).collection("Players");
+    }
+
+    public Tournament createTournament(Tournament tournament) throws Exception {
+        if (tournament == null || tournament.getName() == null) return null;
+
+        DocumentReference ref = tournament.getId() != null
+                ? getTournamentRef(tournament.getId())
+                : db().collection("Tournaments").document();
+        tournament.setId(ref.getId());
+        if (tournament.getRoomIds() == null) tournament.setRoomIds(new ArrayList<>());
+
+        ref.create(tournament).get();
+        LeagueTable table = new LeagueTable();
+        for (Map.Entry<String, RoomScores> room : readRooms(tournament.getRoomIds()).entrySet()) {
+            table.load(room.getKey(), room.getValue());
+        }
+        register(tournament, table);
+        logger.info("Tournament created: " + tournament.getId() + " with " + tournament.getRoomIds().size() + " rooms");
+        return tournament;
+    }
+
+    /**
+     * Adds a room to a tournament, counting the scores its players already have
+     * @return false if the tournament does not exist
+     */
+    public boolean addRoom(String tournamentId, String roomId) throws Exception {
+        Tournament tournament = getTournament(tournamentId);
+        if (tournament == null) return false;
+
+        getTournamentRef(tournamentId).update("roomIds", FieldValue.arrayUnion(roomId)).get();
+        synchronized (tournament) {
+            if (!tournament.getRoomIds().contains(roomId)) tournament.getRoomIds().add(roomId);
+        }
+        roomTournaments.put(roomId, tournamentId);
+        tables.get(tournamentId).load(roomId, readRoom(roomId));
+        return true;
+    }
+
+    /**
+     * Gets a tournament, loading it and rebuilding its leaderboard if this server hasn't seen it yet
+     */
+    public Tournament getTournament(String tournamentId) throws Exception {
+        if (tournamentId == null) return null;
+
+        Tournament known = tournaments.get(tournamentId);
+        if (known != null) return known;
+
+        DocumentSnapshot doc = getTournamentRef(tournamentId).get().get();
+        if (!doc.exists()) return null;
+
+        Tournament tournament = doc.toObject(Tournament.class);
+        if (tournament == null) return null;
+        tournament.setId(doc.getId());
+        if (tournament.getRoomIds() == null) tournament.setRoomIds(new ArrayList<>());
+
+        LeagueTable table = new LeagueTable();
+        for (Map.Entry<String, RoomScores> room : readRooms(tournament.getRoomIds()).entrySet()) {
+            table.load(room.getKey(), room.getValue());
+        }
+        synchronized (this) {
+            Tournament raced = tournaments.get(tournamentId);
+            if (raced != null) return raced;
+            register(tournament, table);
+        }
+        return tournament;
+    }
+
+    /**
+     * @return The best players of the tournament, or null if it does not exist
+     */
+    public List<Standing> getLeaderboard(String tournamentId, int limit) throws Exception {
+        if (getTournament(tournamentId) == null) return null;
+        return tables.get(tournamentId).top(limit);
+    }
+
+    /**
+     * @return The player's standing, or null if the tournament does not exist or the player isn't in it
+     */
+    public Standing getStanding(String tournamentId, String playerId) throws Exception {
+        if (getTournament(tournamentId) == null) return null;
+        return tables.get(tournamentId).standing(playerId);
+    }
+
+    /**
+     * Rebuilds the leaderboard from every room's players and kept results, reading the rooms in
+     * parallel, and compares it with the incrementally maintained one
+     * @param repair Replace the leaderboard with the rebuilt one
+     * @return Comparison summary, or null if the tournament does not exist
+     */
+    public Map<String, Object> recompute(String tournamentId, boolean repair) throws Exception {
+        Tournament tournament = getTournament(tournamentId);
+        if (tournament == null) return null;
+
+        long start = System.currentTimeMillis();
+        List<String> roomIds;
+        synchronized (tournament) {
+            roomIds = new ArrayList<>(tournament.getRoomIds());
+        }
+
+        LeagueTable rebuilt = new LeagueTable();
+        for (Map.Entry<String, RoomScores> room : readRooms(roomIds).entrySet()) {
+            rebuilt.load(room.getKey(), room.getValue());
+        }
+
+        Map<String, Long> expected = rebuilt.ranking.scores();
+        Map<String, Long> actual = tables.get(tournamentId).ranking.scores();
+        Set<String> players = new HashSet<>(expected.keySet());
+        players.addAll(actual.keySet());
+        long mismatches = players.stream().filter(player -> !Objects.equals(expected.get(player), actual.get(player))).count();
+
+        // Changes that happened while the rooms were being read are only in the replaced table
+        if (repair) tables.put(tournamentId, rebuilt);
+        logger.info("Recomputed tournament " + tournamentId + ": " + players.size() + " players, " + mismatches + " mismatches");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tournamentId", tournamentId);
+        result.put("rooms", roomIds.size());
+        result.put("players", expected.size());
+        result.put("mismatches", mismatches);
+        result.put("repaired", repair);
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Rebuilds every leaderboard this server has loaded from the store, including rooms added
+     * to the tournament by other servers
+     */
+    public void rebuildLoaded() {
+        for (Tournament tournament : tournaments.values()) {
+            try {
+                DocumentSnapshot doc = getTournamentRef(tournament.getId()).get().get();
+                List<?> roomIds = doc.exists() ? (List<?>) doc.get("roomIds") : null;
+                if (roomIds != null) {
+                    synchronized (tournament) {
+                        for (Object roomId : roomIds) {
+                            if (!tournament.getRoomIds().contains(roomId.toString())) tournament.getRoomIds().add(roomId.toString());
+                        }
+                    }
+                    roomIds.forEach(roomId -> roomTournaments.put(roomId.toString(), tournament.getId()));
+                }
+                recompute(tournament.getId(), true);
+            } catch (Exception e) {
+                logger.warning("Could not rebuild tournament " + tournament.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @EventListener
+    public void onScoreChanged(ScoreChangedEvent event) {
+        String tournamentId = roomTournaments.get(event.getRoomId());
+        if (tournamentId == null) return;
+
+        LeagueTable table = tables.get(tournamentId);
+        if (table != null) table.apply(event);
+    }
+
+    private void register(Tournament tournament, LeagueTable table) {
+        tables.put(tournament.getId(), table);
+        tournaments.put(tournament.getId(), tournament);
+        tournament.getRoomIds().forEach(roomId -> roomTournaments.put(roomId, tournament.getId()));
+    }
+
+    private Map<String, RoomScores> readRooms(List<String> roomIds) throws Exception {
+        Map<String, CompletableFuture<RoomScores>> reads = new LinkedHashMap<>();
+        for (String roomId : roomIds) {
+            reads.put(roomId, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readRoom(roomId);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Could not read players of room " + roomId, e);
+                }
+            }, recomputers));
+        }
+
+        Map<String, RoomScores> rooms = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<RoomScores>> read : reads.entrySet()) {
+            rooms.put(read.getKey(), read.getValue().join());
+        }
+        return rooms;
+    }
+
+    private RoomScores readRoom(String roomId) throws Exception {
+        ApiFuture<QuerySnapshot> players = getPlayersRef(roomId).get();
+        ApiFuture<QuerySnapshot> results = getResultsRef(roomId).get();
+        return new RoomScores(scores(players.get()), scores(results.get()));
+    }
+
+    private static Map<String, PlayerScore> scores(QuerySnapshot snapshot) {
+        Map<String, PlayerScore> players = new HashMap<>();
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            Long score = doc.getLong("score");
+            players.put(doc.getId(), new PlayerScore(doc.getString("name"), score == null ? 0L : score));
+        }
+        return players;
+    }
+
+    private record PlayerScore(String name, long score) {}
+
+    /**
+     * Scores of the players in a room, and the kept results of those who left it
+     */
+    private record RoomScores(Map<String, PlayerScore> players, Map<String, PlayerScore> results) {}
+
+    /**
+     * Scores of one tournament: per room partial scores, their per player totals and the ranking
+     * of those totals. A room's partial score is what the player kept from earlier visits plus
+     * their score in the room now.
+     */
+    private static class LeagueTable {
+        private final Map<String, Map<String, Long>> roomScores = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, Long>> kept = new ConcurrentHashMap<>();
+        private final Map<String, Long> totals = new ConcurrentHashMap<>();
+        private final Map<String, String> names = new ConcurrentHashMap<>();
+        private final RankedLeaderboard ranking = new RankedLeaderboard();
+
+        void load(String roomId, RoomScores scores) {
+            Map<String, Long> room = roomScores.computeIfAbsent(roomId, id -> new ConcurrentHashMap<>());
+            Map<String, Long> results = kept.computeIfAbsent(roomId, id -> new ConcurrentHashMap<>());
+            Map<String, Long> partials = new HashMap<>();
+            scores.results().forEach((playerId, result) -> {
+                if (result.name() != null) names.put(playerId, result.name());
+                results.put(playerId, result.score());
+                partials.merge(playerId, result.score(), Long::sum);
+            });
+            scores.players().forEach((playerId, player) -> {
+                if (player.name() != null) names.put(playerId, player.name());
+                partials.merge(playerId, player.score(), Long::sum);
+            });
+            partials.forEach((playerId, partial) -> {
+                Long previous = room.put(playerId, partial);
+                change(playerId, partial - (previous == null ? 0 : previous));
+            });
+        }
+
+        void apply(ScoreChangedEvent event) {
+            String playerId = event.getPlayerId();
+            Map<String, Long> room = roomScores.computeIfAbsent(event.getRoomId(), id -> new ConcurrentHashMap<>());
+            Map<String, Long> results = kept.computeIfAbsent(event.getRoomId(), id -> new ConcurrentHashMap<>());
+            if (event.getPlayerName() != null) names.put(playerId, event.getPlayerName());
+
+            switch (event.getKind()) {
+                case JOINED -> {
+                    long partial = results.getOrDefault(playerId, 0L) + event.getScore();
+                    Long previous = room.put(playerId, partial);
+                    change(playerId, partial - (previous == null ? 0 : previous));
+                }
+                case SCORED -> {
+                    room.merge(playerId, event.getScore(), Long::sum);
+                    change(playerId, event.getScore());
+                }
+                // The points stay in the totals; only remember them for a later rejoin
+                case LEFT -> {
+                    Long partial = room.get(playerId);
+                    if (partial != null) results.put(playerId, partial);
+                }
+                case ENDED -> results.putAll(room);
+            }
+        }
+
+        private void change(String playerId, long change) {
+            totals.merge(playerId, change, Long::sum);
+            // Read the total under the ranking's lock so the last writer always ranks the latest total
+            synchronized (ranking) {
+                ranking.put(playerId, totals.getOrDefault(playerId, 0L));
+            }
+        }
+
+        List<Standing> top(int limit) {
+            List<Standing> standings = new ArrayList<>(Math.min(limit, ranking.size()));
+            ranking.top(limit, (rank, playerId, score) -> standings.add(new Standing(rank, playerId, names.get(playerId), score)));
+            return standings;
+        }
+
+        Standing standing(String playerId) {
+            Long score = ranking.score(playerId);
+            if (score == null) return null;
+            return new Standing(ranking.rank(playerId), playerId, names.get(playerId), score);
+        }
+    }
+}
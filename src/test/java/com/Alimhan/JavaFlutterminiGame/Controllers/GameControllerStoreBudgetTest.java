@@ -0,0 +1,370 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultMatcher;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Store round trips and allocations per request for every GameController endpoint, run
+ * against {@link LocalFirestore}. A change that adds a store call to one of these paths, or
+ * makes it allocate a lot more, fails here.
+ *
+ * Budgets are for a warmed-up server: questions are cached and rooms are known to the
+ * change tracker and were read recently. Allocation budgets are per endpoint: the most each
+ * one allocated over three runs, including MockMvc's own work, plus about 25%, measured on
+ * JDK 21. The measured value is logged; set a budget from it again when a path gets cheaper
+ * or the JDK changes.
+ */
+class GameControllerStoreBudgetTest {
+    private static final int WARMUP = 20;
+    private static final int MEASURED = 20;
+    private static final long KB = 1024;
+    // Long enough that rooms read during setup stay fresh for the whole test
+    private static final long FRESH_MS = 60_000;
+    private static final String ROOM = TestGame.ROOM;
+    private static final String ROOM_NUMBER = TestGame.ROOM_NUMBER;
+    private static final String PASSWORD = TestGame.PASSWORD;
+    private static final String HOST = TestGame.HOST;
+
+    private static final Logger logger = Logger.getLogger(GameControllerStoreBudgetTest.class.getName());
+
+    private final ObjectMapper json = new ObjectMapper();
+    private TestGame game;
+    private LocalFirestore store;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        game = new TestGame(FRESH_MS);
+        store = game.store;
+        mvc = game.serve();
+
+        game.putQuestions(20);
+        createRoom(ROOM, ROOM_NUMBER).andExpect(status().isOk());
+    }
+
+    @Test
+    void createRoom() throws Exception {
+        assertWithinBudget("/createRoom", 0, 0, 1, 88 * KB,
+                i -> {},
+                i -> createRoom("room-" + i, "n" + i),
+                status().isOk());
+    }
+
+    @Test
+    void joinRoom() throws Exception {
+        assertWithinBudget("/joinRoom", 0, 1, 1, 200 * KB,
+                i -> {},
+                i -> joinRoom("player-" + i),
+                status().isOk());
+        assertNotNull(store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)));
+    }
+
+    @Test
+    void exitRoom() throws Exception {
+        assertWithinBudget("/rooms/exit", 2, 0, 1, 264 * KB,
+                i -> joinRoom("player-" + i).andExpect(status().isOk()),
+                i -> mvc.perform(post("/game/rooms/exit").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("roomId", ROOM, "player", Map.of("id", "player-" + i))))),
+                status().isOk());
+        assertNull(store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)));
+        assertEquals(0L, store.get("Results/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)).get("score"));
+    }
+
+    @Test
+    void deleteRoom() throws Exception {
+        assertWithinBudget("DELETE /rooms/{roomId}", 0, 1, 1, 384 * KB,
+                i -> {
+                    createRoom("doomed-" + i, "d" + i).andExpect(status().isOk());
+                    for (int p = 0; p < 3; p++) {
+                        store.put("Rooms/doomed-" + i + "/Players/player-" + p, Map.of("name", "Player " + p, "score", 10L * p));
+                    }
+                },
+                i -> mvc.perform(delete("/game/rooms/doomed-" + i)),
+                status().isOk());
+        assertNull(store.get("Rooms/doomed-" + (WARMUP + MEASURED - 1)));
+        assertEquals(20L, store.get("Results/doomed-" + (WARMUP + MEASURED - 1) + "/Players/player-2").get("score"));
+    }
+
+    @Test
+    void getRoom() throws Exception {
+        assertWithinBudget("GET /rooms/{roomId}", 1, 0, 0, 96 * KB,
+                i -> {},
+                i -> mvc.perform(get("/game/rooms/" + ROOM).param("playerId", HOST)),
+                status().isOk());
+    }
+
+    @Test
+    void getRoomNotModified() throws Exception {
+        String etag = mvc.perform(get("/game/rooms/" + ROOM)).andReturn().getResponse().getHeader("ETag");
+        assertWithinBudget("GET /rooms/{roomId} with If-None-Match", 0, 0, 0, 24 * KB,
+                i -> {},
+                i -> mvc.perform(get("/game/rooms/" + ROOM).header("If-None-Match", etag)),
+                status().isNotModified());
+    }
+
+    @Test
+    void pollRoom() throws Exception {
+        pressBuzzer("player-0").andExpect(status().isOk());
+        assertWithinBudget("GET /rooms/{roomId}?sinceVersion", 0, 0, 0, 24 * KB,
+                i -> {},
+                i -> mvc.perform(get("/game/rooms/" + ROOM).param("sinceVersion", "0")),
+                request().asyncStarted());
+    }
+
+    @Test
+    void nextQuestion() throws Exception {
+        String[] current = {"q01"};
+        // Queries are only needed when the room's prefetch buffer hasn't caught up, and may wrap around
+        assertWithinBudget("/rooms/{roomId}/nextQuestion", 0, 2, 1, 88 * KB,
+                i -> {},
+                i -> {
+                    ResultActions result = mvc.perform(post("/game/rooms/" + ROOM + "/nextQuestion").param("currentQuestionId", current[0]));
+                    current[0] = (String) json.readValue(result.andReturn().getResponse().getContentAsString(), Map.class).get("questionId");
+                    return result;
+                },
+                status().isOk());
+    }
+
+    @Test
+    void firstBuzzer() throws Exception {
+        assertWithinBudget("/FirstBuzzer", 1, 0, 1, 128 * KB,
+                i -> clearBuzzer(),
+                i -> pressBuzzer("player-" + i),
+                status().isOk());
+        assertEquals("player-" + (WARMUP + MEASURED - 1), store.get("Rooms/" + ROOM).get("firstBuzzer"));
+    }
+
+    @Test
+    void throttledBuzzer() throws Exception {
+        assertWithinBudget("/FirstBuzzer when throttled", 0, 0, 0, 40 * KB,
+                i -> pressBuzzer("player-" + i).andExpect(status().isOk()),
+                i -> pressBuzzer("player-" + i),
+                content().json("{\"status\":\"success\"}"));
+    }
+
+    @Test
+    void resetBuzzing() throws Exception {
+        assertWithinBudget("/resetBuzzing", 1, 0, 1, 176 * KB,
+                this::buzzAs,
+                i -> judge("/game/resetBuzzing"),
+                status().isOk());
+        assertEquals(10L, store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)).get("score"));
+        assertNull(store.get("Rooms/" + ROOM).get("firstBuzzer"));
+    }
+
+    @Test
+    void cancelBuzzing() throws Exception {
+        assertWithinBudget("/cancelBuzzing", 1, 0, 1, 176 * KB,
+                this::buzzAs,
+                i -> judge("/game/cancelBuzzing"),
+                status().isOk());
+        assertEquals(-10L, store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)).get("score"));
+        assertNull(store.get("Rooms/" + ROOM).get("firstBuzzer"));
+    }
+
+    @Test
+    void joinRoomBatch() throws Exception {
+        assertWithinBudget("/rooms/{roomId}/players", 2, 0, 1, 2072 * KB,
+                i -> {},
+                i -> {
+                    List<Map<String, Object>> players = new ArrayList<>();
+                    for (int p = 0; p < 40; p++) {
+                        players.add(Map.of("id", "player-" + i + "-" + p, "name", "Player " + p));
+                    }
+                    return mvc.perform(post("/game/rooms/" + ROOM + "/players").contentType(MediaType.APPLICATION_JSON)
+                            .content(body(Map.of("roomPassword", PASSWORD, "players", players))));
+                },
+                jsonPath("$.joined").value(40));
+        assertNotNull(store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1) + "-39"));
+    }
+
+    @Test
+    void joinRoomBatchKeepsScoresOfPlayersAlreadyInTheRoom() throws Exception {
+        store.put("Rooms/" + ROOM + "/Players/player-0", Map.of("id", "player-0", "name", "Player 0", "score", 50L));
+
+        mvc.perform(post("/game/rooms/" + ROOM + "/players").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("hostId", HOST, "players", List.of(
+                                Map.of("id", "player-0", "name", "Renamed"),
+                                Map.of("id", "player-1", "name", "Player 1"))))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.joined").value(1))
+                .andExpect(jsonPath("$.updatedPlayerIds[0]").value("player-0"));
+        assertEquals(50L, store.get("Rooms/" + ROOM + "/Players/player-0").get("score"));
+        assertEquals("Renamed", store.get("Rooms/" + ROOM + "/Players/player-0").get("name"));
+    }
+
+    @Test
+    void joinRoomBatchNeedsThePasswordOrTheHost() throws Exception {
+        List<Map<String, Object>> players = List.of(Map.of("id", "player-0", "name", "Player 0"));
+
+        mvc.perform(post("/game/rooms/" + ROOM + "/players").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("players", players))))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/game/rooms/" + ROOM + "/players").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("roomPassword", "wrong", "hostId", "player-0", "players", players))))
+                .andExpect(status().isNotFound());
+        assertNull(store.get("Rooms/" + ROOM + "/Players/player-0"));
+    }
+
+    @Test
+    void adjustScores() throws Exception {
+        List<Map<String, Object>> adjustments = new ArrayList<>();
+        for (int p = 0; p < 10; p++) {
+            store.put("Rooms/" + ROOM + "/Players/player-" + p, Map.of("id", "player-" + p, "name", "Player " + p, "score", 0L));
+            adjustments.add(Map.of("playerId", "player-" + p, "change", 1));
+        }
+        assertWithinBudget("/rooms/{roomId}/scores", 0, 0, 1, 400 * KB,
+                i -> {},
+                i -> mvc.perform(post("/game/rooms/" + ROOM + "/scores").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("hostId", HOST, "adjustments", adjustments)))),
+                jsonPath("$.adjusted").value(10));
+        assertEquals((long) (WARMUP + MEASURED), store.get("Rooms/" + ROOM + "/Players/player-9").get("score"));
+    }
+
+    @Test
+    void adjustScoresOfUnknownPlayerChangesNothing() throws Exception {
+        store.put("Rooms/" + ROOM + "/Players/player-0", Map.of("id", "player-0", "name", "Player 0", "score", 0L));
+
+        mvc.perform(post("/game/rooms/" + ROOM + "/scores").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("hostId", HOST, "adjustments", List.of(
+                                Map.of("playerId", "player-0", "change", 5),
+                                Map.of("playerId", "nobody", "change", 5))))))
+                .andExpect(status().isNotFound());
+        assertEquals(0L, store.get("Rooms/" + ROOM + "/Players/player-0").get("score"));
+    }
+
+    @Test
+    void adjustScoresNeedsTheHost() throws Exception {
+        store.put("Rooms/" + ROOM + "/Players/player-0", Map.of("id", "player-0", "name", "Player 0", "score", 0L));
+        List<Map<String, Object>> adjustments = List.of(Map.of("playerId", "player-0", "change", 100));
+
+        mvc.perform(post("/game/rooms/" + ROOM + "/scores").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("adjustments", adjustments))))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/game/rooms/" + ROOM + "/scores").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("hostId", "player-0", "adjustments", adjustments))))
+                .andExpect(status().isNotFound());
+        assertEquals(0L, store.get("Rooms/" + ROOM + "/Players/player-0").get("score"));
+    }
+
+    @Test
+    void judgeAndAdvance() throws Exception {
+        // Queries are only needed when the room's prefetch buffer hasn't caught up, and may wrap around
+        assertWithinBudget("/rooms/{roomId}/judge", 1, 2, 1, 168 * KB,
+                this::buzzAs,
+                i -> mvc.perform(post("/game/rooms/" + ROOM + "/judge").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("correct", true, "advance", true)))),
+                jsonPath("$.nextQuestionId").exists());
+        assertEquals(10L, store.get("Rooms/" + ROOM + "/Players/player-" + (WARMUP + MEASURED - 1)).get("score"));
+        assertNull(store.get("Rooms/" + ROOM).get("firstBuzzer"));
+    }
+
+    @Test
+    void judgeNeedsCorrect() throws Exception {
+        buzzAs(0);
+        mvc.perform(post("/game/rooms/" + ROOM + "/judge").contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("advance", true))))
+                .andExpect(status().isBadRequest());
+        assertEquals("player-0", store.get("Rooms/" + ROOM).get("firstBuzzer"));
+    }
+
+    @Test
+    void finalScoreBoard() throws Exception {
+        joinRoom("player-0").andExpect(status().isOk());
+        assertWithinBudget("/final/{roomId}", 0, 1, 2, 168 * KB,
+                i -> {},
+                i -> mvc.perform(post("/game/final/" + ROOM)),
+                status().isOk());
+    }
+
+    /**
+     * Runs a request {@link #WARMUP} times, then checks the store round trips and the bytes
+     * allocated by the next {@link #MEASURED} runs. Preparation is not counted.
+     */
+    private void assertWithinBudget(String endpoint, int maxReads, int maxQueries, int maxWrites, long maxAllocatedBytes,
+                                    Step prepare, Call call, ResultMatcher expected) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "allocation counting is not supported by this JVM");
+
+        long allocated = 0;
+        for (int i = 0; i < WARMUP + MEASURED; i++) {
+            prepare.run(i);
+            store.resetCounts();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            call.perform(i).andExpect(expected);
+            long after = threads.getCurrentThreadAllocatedBytes();
+            if (i < WARMUP) continue;
+
+            allocated += after - before;
+            assertTrue(store.reads() <= maxReads, endpoint + " made " + store.reads() + " reads, budget is " + maxReads);
+            assertTrue(store.queries() <= maxQueries, endpoint + " made " + store.queries() + " queries, budget is " + maxQueries);
+            assertTrue(store.writes() <= maxWrites, endpoint + " made " + store.writes() + " writes, budget is " + maxWrites);
+        }
+
+        long perRequest = allocated / MEASURED;
+        logger.info(endpoint + " allocated " + perRequest + " bytes per request, budget is " + maxAllocatedBytes);
+        assertTrue(perRequest <= maxAllocatedBytes,
+                endpoint + " allocated " + perRequest + " bytes per request, budget is " + maxAllocatedBytes);
+    }
+
+    private ResultActions createRoom(String roomId, String roomNumber) throws Exception {
+        return game.createRoom(roomId, roomNumber);
+    }
+
+    private ResultActions joinRoom(String playerId) throws Exception {
+        return game.joinRoom(playerId);
+    }
+
+    private ResultActions pressBuzzer(String playerId) throws Exception {
+        return game.pressBuzzer(playerId);
+    }
+
+    private ResultActions judge(String path) throws Exception {
+        return mvc.perform(post(path).contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("roomId", ROOM, "questionId", "q01"))));
+    }
+
+    /**
+     * Makes a player who just joined the first buzzer of the room
+     */
+    private void buzzAs(int i) throws Exception {
+        joinRoom("player-" + i).andExpect(status().isOk());
+        pressBuzzer("player-" + i).andExpect(status().isOk());
+    }
+
+    private void clearBuzzer() {
+        Map<String, Object> cleared = new HashMap<>();
+        cleared.put("firstBuzzer", null);
+        cleared.put("buzzingOpen", false);
+        store.put("Rooms/" + ROOM, cleared);
+    }
+
+    private String body(Object value) throws Exception {
+        return game.body(value);
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(int i) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        ResultActions perform(int i) throws Exception;
+    }
+}
@@ -0,0 +1,365 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.api.gax.rpc.InvalidArgumentException;
+import com.google.api.gax.rpc.NotFoundException;
+import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for Firestore that counts the round trips made from the thread that
+ * created it: document reads, queries, and writes (a batch commit is one write). Calls made
+ * from background threads, like question prefetching, still work but aren't counted.
+ *
+ * Covers the parts of the client API the game uses: documents, subcollections, equality
+ * filters, ordering, startAfter on document IDs, limits, batches, numeric increments and
+ * reading several documents at once. Writes fail with the same status codes as Firestore.
+ */
+class LocalFirestore {
+    private static final int MAX_WRITES_PER_COMMIT = 500;
+
+    private final ConcurrentSkipListMap<String, Map<String, Object>> documents = new ConcurrentSkipListMap<>();
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final AtomicLong ids = new AtomicLong();
+    private final Thread owner = Thread.currentThread();
+    private final Firestore firestore;
+
+    // Only touched from the owner thread
+    private int reads;
+    private int queries;
+    private int writes;
+
+    LocalFirestore() {
+        firestore = stub(Firestore.class, call -> switch (call.getMethod().getName()) {
+            case "collection" -> collection(call.getArgument(0));
+            case "batch" -> batch();
+            case "getAll" -> getAll(call.getArguments());
+            default -> fallback(call, "");
+        });
+    }
+
+    Firestore firestore() {
+        return firestore;
+    }
+
+    int reads() {
+        return reads;
+    }
+
+    int queries() {
+        return queries;
+    }
+
+    int writes() {
+        return writes;
+    }
+
+    void resetCounts() {
+        reads = 0;
+        queries = 0;
+        writes = 0;
+    }
+
+    /**
+     * Merges fields into a document without counting a write
+     */
+    void put(String path, Map<String, Object> fields) {
+        documents.computeIfAbsent(path, p -> new HashMap<>()).putAll(fields);
+    }
+
+    /**
+     * @return Copy of a document's fields, or null if it does not exist
+     */
+    Map<String, Object> get(String path) {
+        Map<String, Object> data = documents.get(path);
+        return data == null ? null : new HashMap<>(data);
+    }
+
+    private CollectionReference collection(String path) {
+        QuerySpec all = new QuerySpec(path, List.of(), null, false, null, Integer.MAX_VALUE);
+        return stub(CollectionReference.class, call -> switch (call.getMethod().getName()) {
+            case "document" -> document(path + "/" + (call.getArguments().length == 0 ? "auto" + ids.incrementAndGet() : call.getArgument(0)));
+            case "getId" -> lastSegment(path);
+            case "getPath" -> path;
+            case "listDocuments" -> {
+                if (counted()) queries++;
+                List<DocumentReference> refs = new ArrayList<>();
+                children(path).forEach(child -> refs.add(document(child)));
+                yield refs;
+            }
+            default -> query(all, call);
+        });
+    }
+
+    private DocumentReference document(String path) {
+        return stub(DocumentReference.class, call -> {
+            Object[] args = call.getArguments();
+            switch (call.getMethod().getName()) {
+                case "getId": return lastSegment(path);
+                case "getPath": return path;
+                case "collection": return collection(path + "/" + args[0]);
+                case "get":
+                    if (counted()) reads++;
+                    return ApiFutures.immediateFuture(snapshot(DocumentSnapshot.class, path, get(path)));
+                case "create":
+                    if (counted()) writes++;
+                    if (documents.containsKey(path)) return ApiFutures.immediateFailedFuture(alreadyExists(path));
+                    set(path, args[0], false);
+                    return ApiFutures.immediateFuture(null);
+                case "set":
+                    if (counted()) writes++;
+                    set(path, args[0], args.length > 1);
+                    return ApiFutures.immediateFuture(null);
+                case "update":
+                    if (counted()) writes++;
+                    if (!documents.containsKey(path)) return ApiFutures.immediateFailedFuture(notFound(path));
+                    update(path, args, 0);
+                    return ApiFutures.immediateFuture(null);
+                case "delete":
+                    if (counted()) writes++;
+                    documents.remove(path);
+                    return ApiFutures.immediateFuture(null);
+                default: return fallback(call, path);
+            }
+        });
+    }
+
+    /**
+     * Batch that applies all its writes or, if one of them creates a document that exists or
+     * updates a missing one, or it holds more writes than Firestore accepts in one commit, none
+     */
+    private WriteBatch batch() {
+        List<Runnable> pending = new ArrayList<>();
+        Set<String> written = new HashSet<>();
+        Set<String> created = new HashSet<>();
+        Set<String> updated = new HashSet<>();
+        return stub(WriteBatch.class, call -> {
+            Object[] args = call.getArguments();
+            String name = call.getMethod().getName();
+            if (name.equals("commit")) {
+                if (counted()) writes++;
+                if (pending.size() > MAX_WRITES_PER_COMMIT) {
+                    return ApiFutures.immediateFailedFuture(tooManyWrites(pending.size()));
+                }
+                for (String path : created) {
+                    if (documents.containsKey(path)) return ApiFutures.immediateFailedFuture(alreadyExists(path));
+                }
+                for (String path : updated) {
+                    if (!written.contains(path) && !documents.containsKey(path)) {
+                        return ApiFutures.immediateFailedFuture(notFound(path));
+                    }
+                }
+                pending.forEach(Runnable::run);
+                return ApiFutures.immediateFuture(List.of());
+            }
+
+            String path = args.length > 0 && args[0] instanceof DocumentReference ref ? ref.getPath() : null;
+            switch (name) {
+                case "create", "set" -> {
+                    if (name.equals("create")) created.add(path);
+                    written.add(path);
+                    pending.add(() -> set(path, args[1], args.length > 2));
+                }
+                case "update" -> {
+                    updated.add(path);
+                    pending.add(() -> update(path, args, 1));
+                }
+                case "delete" -> pending.add(() -> documents.remove(path));
+                default -> {
+                    return fallback(call, "batch");
+                }
+            }
+            return call.getMock();
+        });
+    }
+
+    /**
+     * Reads several documents in one round trip
+     */
+    private Object getAll(Object[] args) {
+        if (counted()) reads++;
+        List<DocumentSnapshot> snapshots = new ArrayList<>();
+        for (Object arg : args) {
+            if (arg instanceof DocumentReference ref) snapshots.add(snapshot(DocumentSnapshot.class, ref.getPath(), get(ref.getPath())));
+            if (arg instanceof DocumentReference[] refs) {
+                for (DocumentReference ref : refs) snapshots.add(snapshot(DocumentSnapshot.class, ref.getPath(), get(ref.getPath())));
+            }
+        }
+        return ApiFutures.immediateFuture(snapshots);
+    }
+
+    // Failures carry the status codes the real client reports
+    private static NotFoundException notFound(String path) {
+        return new NotFoundException(new IllegalStateException("No document to update: " + path), GrpcStatusCode.of(Status.Code.NOT_FOUND), false);
+    }
+
+    private static InvalidArgumentException tooManyWrites(int count) {
+        return new InvalidArgumentException(new IllegalStateException("maximum " + MAX_WRITES_PER_COMMIT + " writes allowed per request, got " + count),
+                GrpcStatusCode.of(Status.Code.INVALID_ARGUMENT), false);
+    }
+
+    private static AlreadyExistsException alreadyExists(String path) {
+        return new AlreadyExistsException(new IllegalStateException("Document already exists: " + path), GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false);
+    }
+
+    private Query query(QuerySpec spec) {
+        return stub(Query.class, call -> query(spec, call));
+    }
+
+    private Object query(QuerySpec spec, InvocationOnMock call) {
+        Object[] args = call.getArguments();
+        return switch (call.getMethod().getName()) {
+            case "whereEqualTo" -> {
+                List<Object[]> filters = new ArrayList<>(spec.filters());
+                filters.add(new Object[]{args[0], args[1]});
+                yield query(new QuerySpec(spec.collection(), filters, spec.orderBy(), spec.descending(), spec.startAfter(), spec.limit()));
+            }
+            // Ordering by a FieldPath is always by document ID here
+            case "orderBy" -> query(new QuerySpec(spec.collection(), spec.filters(), args[0] instanceof String field ? field : null,
+                    args.length > 1 && args[1] == Query.Direction.DESCENDING, spec.startAfter(), spec.limit()));
+            case "startAfter" -> query(new QuerySpec(spec.collection(), spec.filters(), spec.orderBy(), spec.descending(), (String) args[0], spec.limit()));
+            // Every field is returned whatever is selected
+            case "select" -> query(spec);
+            case "limit" -> query(new QuerySpec(spec.collection(), spec.filters(), spec.orderBy(), spec.descending(), spec.startAfter(), (Integer) args[0]));
+            case "get" -> {
+                if (counted()) queries++;
+                yield ApiFutures.immediateFuture(run(spec));
+            }
+            default -> fallback(call, spec.collection());
+        };
+    }
+
+    private QuerySnapshot run(QuerySpec spec) {
+        List<String> matches = new ArrayList<>();
+        for (String path : children(spec.collection())) {
+            Map<String, Object> data = documents.get(path);
+            if (data == null) continue;
+            boolean matching = spec.filters().stream().allMatch(filter -> Objects.equals(data.get((String) filter[0]), filter[1]));
+            if (matching && (spec.startAfter() == null || lastSegment(path).compareTo(spec.startAfter()) > 0)) matches.add(path);
+        }
+        if (spec.orderBy() != null) {
+            Comparator<String> byField = (a, b) -> compare(documents.get(a).get(spec.orderBy()), documents.get(b).get(spec.orderBy()));
+            matches.sort(spec.descending() ? byField.reversed() : byField);
+        }
+
+        List<QueryDocumentSnapshot> docs = new ArrayList<>();
+        for (String path : matches.subList(0, Math.min(spec.limit(), matches.size()))) {
+            docs.add(snapshot(QueryDocumentSnapshot.class, path, get(path)));
+        }
+        return stub(QuerySnapshot.class, call -> switch (call.getMethod().getName()) {
+            case "isEmpty" -> docs.isEmpty();
+            case "size" -> docs.size();
+            case "getDocuments" -> docs;
+            case "iterator" -> docs.iterator();
+            default -> fallback(call, spec.collection());
+        });
+    }
+
+    private <T extends DocumentSnapshot> T snapshot(Class<T> type, String path, Map<String, Object> data) {
+        return stub(type, call -> switch (call.getMethod().getName()) {
+            case "exists" -> data != null;
+            case "getId" -> lastSegment(path);
+            case "getReference" -> document(path);
+            case "getData" -> data;
+            case "contains" -> data != null && data.containsKey((String) call.getArgument(0));
+            case "get" -> data == null ? null : data.get((String) call.getArgument(0));
+            case "getString" -> data == null ? null : (String) data.get((String) call.getArgument(0));
+            case "getBoolean" -> data == null ? null : (Boolean) data.get((String) call.getArgument(0));
+            case "getLong" -> data == null || data.get((String) call.getArgument(0)) == null ? null
+                    : ((Number) data.get((String) call.getArgument(0))).longValue();
+            case "toObject" -> data == null ? null : mapper.convertValue(data, (Class<?>) call.getArgument(0));
+            default -> fallback(call, path);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void set(String path, Object value, boolean merge) {
+        Map<String, Object> fields = value instanceof Map<?, ?> map ? new HashMap<>((Map<String, Object>) map) : mapper.convertValue(value, Map.class);
+        Map<String, Object> current = merge ? documents.getOrDefault(path, new HashMap<>()) : new HashMap<>();
+        fields.forEach((field, fieldValue) -> current.put(field, resolve(current.get(field), fieldValue)));
+        documents.put(path, current);
+    }
+
+    /**
+     * Applies update arguments from {@code from} on: either a map of fields, or alternating
+     * field names and values
+     */
+    @SuppressWarnings("unchecked")
+    private void update(String path, Object[] args, int from) {
+        Map<String, Object> current = documents.get(path);
+        if (current == null) throw new IllegalStateException("No document to update: " + path);
+
+        if (args[from] instanceof Map<?, ?> fields) {
+            ((Map<String, Object>) fields).forEach((field, value) -> current.put(field, resolve(current.get(field), value)));
+            return;
+        }
+        for (int i = from; i + 1 < args.length; i += 2) {
+            current.put((String) args[i], resolve(current.get((String) args[i]), args[i + 1]));
+        }
+    }
+
+    private static Object resolve(Object current, Object value) {
+        if (!(value instanceof FieldValue)) return value;
+
+        // FieldValue.increment keeps its amount in a private field
+        for (Class<?> type = value.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field operand = type.getDeclaredField("operand");
+                operand.setAccessible(true);
+                long amount = ((Number) operand.get(value)).longValue();
+                return (current instanceof Number number ? number.longValue() : 0L) + amount;
+            } catch (NoSuchFieldException e) {
+                // keep looking in the superclass
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new UnsupportedOperationException("LocalFirestore does not support " + value);
+    }
+
+    private List<String> children(String collection) {
+        String prefix = collection + "/";
+        List<String> children = new ArrayList<>();
+        for (String path : documents.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+            if (path.indexOf('/', prefix.length()) < 0) children.add(path);
+        }
+        return children;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) return a == b ? 0 : a == null ? -1 : 1;
+        if (a instanceof Number x && b instanceof Number y) return Double.compare(x.doubleValue(), y.doubleValue());
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private boolean counted() {
+        return Thread.currentThread() == owner;
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static Object fallback(InvocationOnMock call, String path) {
+        if (call.getMethod().getName().equals("toString")) return "LocalFirestore[" + path + "]";
+        throw new UnsupportedOperationException("LocalFirestore does not support " + call.getMethod());
+    }
+
+    private static <T> T stub(Class<T> type, Answer<?> answer) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly().defaultAnswer(answer));
+    }
+
+    private record QuerySpec(String collection, List<Object[]> filters, String orderBy, boolean descending,
+                             String startAfter, int limit) {}
+}
@@ -0,0 +1,99 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.service.QuestionImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Question pack imports against {@link LocalFirestore}: parsing of streamed CSV and JSON, and
+ * what an import does to questions already in the store
+ */
+class QuestionControllerTest {
+    private static final String CSV_PACK = "\uFEFFText,Answer,Score\r\n"
+            + "\"Say \"\"hi\"\"\",hello,10\r\n"
+            + "\"Line one\nline two, with a comma\",two,20\r\n";
+
+    private LocalFirestore store;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        store = new LocalFirestore();
+        QuestionImportService importService = new QuestionImportService(FirestoreProvider.of(store.firestore()), new ObjectMapper());
+        mvc = MockMvcBuilders.standaloneSetup(new QuestionController(importService)).build();
+    }
+
+    @Test
+    void csvIsImportedInRecordOrder() throws Exception {
+        importPack("quiz", "text/csv", CSV_PACK)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"))
+                .andExpect(jsonPath("$.written").value(2));
+
+        assertEquals("Say \"hi\"", store.get("Questions/quiz-00000001").get("text"));
+        assertEquals("Line one\nline two, with a comma", store.get("Questions/quiz-00000002").get("text"));
+        assertEquals(20L, store.get("Questions/quiz-00000002").get("score"));
+    }
+
+    @Test
+    void jsonIsReadAsAnArrayOrAsConsecutiveObjects() throws Exception {
+        importPack("array", "application/json",
+                "[{\"text\":\"One\",\"answer\":\"1\",\"score\":10},{\"text\":\"No answer\",\"score\":10}]")
+                .andExpect(jsonPath("$.written").value(1))
+                .andExpect(jsonPath("$.invalid").value(1));
+        importPack("stream", "application/json",
+                "{\"text\":\"Two\",\"answer\":\"2\",\"score\":\"20\"}\n{\"text\":\"Three\",\"answer\":\"3\",\"score\":30}")
+                .andExpect(jsonPath("$.written").value(2));
+
+        assertEquals("One", store.get("Questions/array-00000001").get("text"));
+        assertEquals(20L, store.get("Questions/stream-00000001").get("score"));
+        assertEquals("Three", store.get("Questions/stream-00000002").get("text"));
+    }
+
+    @Test
+    void rerunWritesNothing() throws Exception {
+        importPack("quiz", "text/csv", CSV_PACK).andExpect(jsonPath("$.written").value(2));
+        store.put("Questions/quiz-00000001", Map.of("edited", true));
+
+        importPack("quiz", "text/csv", CSV_PACK)
+                .andExpect(jsonPath("$.status").value("DONE"))
+                .andExpect(jsonPath("$.written").value(0))
+                .andExpect(jsonPath("$.existing").value(2));
+        importPack("renamed", "text/csv", CSV_PACK)
+                .andExpect(jsonPath("$.written").value(0))
+                .andExpect(jsonPath("$.existing").value(2));
+
+        assertEquals(true, store.get("Questions/quiz-00000001").get("edited"));
+        assertNull(store.get("Questions/renamed-00000001"));
+    }
+
+    @Test
+    void otherPackUnderATakenNameDoesNotOverwriteIt() throws Exception {
+        importPack("quiz", "text/csv", CSV_PACK).andExpect(jsonPath("$.written").value(2));
+
+        importPack("quiz", "text/csv", "text,answer,score\nSomething else,else,5\n")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PARTIAL"))
+                .andExpect(jsonPath("$.written").value(0))
+                .andExpect(jsonPath("$.failed").value(1));
+
+        assertEquals("Say \"hi\"", store.get("Questions/quiz-00000001").get("text"));
+    }
+
+    private ResultActions importPack(String packName, String contentType, String body) throws Exception {
+        return mvc.perform(post("/game/questions/import").param("pack", packName)
+                .contentType(MediaType.parseMediaType(contentType))
+                .content(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.models.RoomDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Conditional gets and long polls when another server changes a room: the change is written
+ * straight to {@link LocalFirestore}, so only a store read can see it.
+ */
+class RoomChangesAcrossServersTest {
+    private static final String ROOM = TestGame.ROOM;
+
+    private LocalFirestore store;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Nothing read from the store stays fresh, as if other servers were always busy
+        TestGame game = new TestGame(0);
+        store = game.store;
+        mvc = game.serve();
+
+        game.putQuestions(1);
+        game.createRoom(ROOM, TestGame.ROOM_NUMBER).andExpect(status().isOk());
+    }
+
+    @Test
+    void conditionalGetSeesChangeFromAnotherServer() throws Exception {
+        String etag = mvc.perform(get("/game/rooms/" + ROOM)).andReturn().getResponse().getHeader("ETag");
+        changeElsewhere(5);
+
+        String changed = mvc.perform(get("/game/rooms/" + ROOM).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstBuzzer").value("remote"))
+                .andExpect(jsonPath("$.room").doesNotExist())
+                .andExpect(jsonPath("$.question.text").value("Question 1"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, changed);
+
+        mvc.perform(get("/game/rooms/" + ROOM).header("If-None-Match", changed)).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void parkedPollWakesOnChangeFromAnotherServer() throws Exception {
+        MvcResult poll = mvc.perform(get("/game/rooms/" + ROOM).param("sinceVersion", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        changeElsewhere(1);
+
+        ResponseEntity<?> response = (ResponseEntity<?>) poll.getAsyncResult(10_000);
+        assertEquals(200, response.getStatusCode().value());
+        RoomDelta delta = (RoomDelta) response.getBody();
+        assertNotNull(delta);
+        assertEquals(1, delta.getVersion());
+    }
+
+    private void changeElsewhere(long version) {
+        store.put("Rooms/" + ROOM, Map.of("id", ROOM, "version", version, "currentQuestion", "q01",
+                "firstBuzzer", "remote", "buzzingOpen", true));
+    }
+}
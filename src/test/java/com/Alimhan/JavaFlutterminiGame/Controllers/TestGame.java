@@ -0,0 +1,110 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.service.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * A game server wired the way Spring wires it, against {@link LocalFirestore}, with helpers for
+ * the requests controller tests start from. Create it on the test's thread, so the store
+ * counts the test's round trips.
+ */
+class TestGame {
+    static final String ROOM = "room";
+    static final String ROOM_NUMBER = "1234";
+    static final String PASSWORD = "secret";
+    static final String HOST = "host";
+
+    final LocalFirestore store = new LocalFirestore();
+    final FirestoreProvider firestore = FirestoreProvider.of(store.firestore());
+    final BuzzerRateLimiter buzzerRateLimiter;
+    final GameService gameService;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final List<Consumer<Object>> listeners = new CopyOnWriteArrayList<>();
+    private MockMvc mvc;
+
+    /**
+     * @param freshMillis How long a room read from the store is trusted; 0 acts as if other
+     * servers were always changing rooms
+     */
+    TestGame(long freshMillis) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ResilientStore resilientStore = new ResilientStore(registry);
+        buzzerRateLimiter = new BuzzerRateLimiter(registry);
+        gameService = new GameService(firestore, resilientStore, new QuestionService(firestore, resilientStore),
+                new RoomChangeTracker(freshMillis), buzzerRateLimiter, event -> listeners.forEach(listener -> listener.accept(event)));
+    }
+
+    /**
+     * Hands every event the game publishes to a listener, as Spring does for @EventListener methods
+     */
+    void listen(Consumer<Object> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Serves the game controller next to the given ones; the helpers below send their requests here
+     */
+    MockMvc serve(Object... controllers) {
+        Object[] all = new Object[controllers.length + 1];
+        all[0] = new GameController(gameService, buzzerRateLimiter);
+        System.arraycopy(controllers, 0, all, 1, controllers.length);
+        mvc = MockMvcBuilders.standaloneSetup(all).build();
+        return mvc;
+    }
+
+    /**
+     * Stores questions q01 to q{count}, worth 10 points each
+     */
+    void putQuestions(int count) {
+        for (int i = 1; i <= count; i++) {
+            store.put(String.format("Questions/q%02d", i), Map.of("text", "Question " + i, "answer", "Answer " + i, "score", 10L));
+        }
+    }
+
+    ResultActions createRoom(String roomId, String roomNumber) throws Exception {
+        Map<String, Object> room = new HashMap<>();
+        room.put("id", roomId);
+        room.put("roomNumber", roomNumber);
+        room.put("roomPassword", PASSWORD);
+        room.put("currentQuestion", "q01");
+        room.put("host", Map.of("id", HOST, "name", "Host"));
+        return postJson("/game/createRoom", room);
+    }
+
+    ResultActions joinRoom(String playerId) throws Exception {
+        return postJson("/game/joinRoom", Map.of(
+                "roomID", ROOM_NUMBER,
+                "roomPassword", PASSWORD,
+                "player", Map.of("id", playerId, "name", "Player " + playerId)));
+    }
+
+    ResultActions exit(String playerId) throws Exception {
+        return postJson("/game/rooms/exit", Map.of("roomId", ROOM, "player", Map.of("id", playerId)));
+    }
+
+    ResultActions pressBuzzer(String playerId) throws Exception {
+        return postJson("/game/FirstBuzzer", Map.of("roomId", ROOM, "playerId", playerId));
+    }
+
+    ResultActions postJson(String path, Object body) throws Exception {
+        return mvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).content(body(body)));
+    }
+
+    String body(Object value) throws Exception {
+        return json.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,141 @@
+package com.Alimhan.JavaFlutterminiGame.Controllers;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.Alimhan.JavaFlutterminiGame.models.ScoreChangedEvent;
+import com.Alimhan.JavaFlutterminiGame.service.TournamentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tournament leaderboards against {@link LocalFirestore}: points scored in a room count for
+ * the tournament even after the player leaves or the room is deleted, and a server that
+ * rebuilds the leaderboard from the store agrees with one that followed the game.
+ */
+class TournamentControllerTest {
+    private static final String ROOM = TestGame.ROOM;
+    private static final String HOST = TestGame.HOST;
+    private static final String TOURNAMENT = "cup";
+
+    private TestGame game;
+    private LocalFirestore store;
+    private FirestoreProvider firestore;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Rooms read from the store stay fresh as long as on a deployed server
+        game = new TestGame(2_000);
+        store = game.store;
+        firestore = game.firestore;
+        TournamentService tournaments = new TournamentService(firestore);
+        game.listen(event -> {
+            if (event instanceof ScoreChangedEvent changed) tournaments.onScoreChanged(changed);
+        });
+        mvc = game.serve(new TournamentController(tournaments));
+
+        game.putQuestions(1);
+        game.createRoom(ROOM, TestGame.ROOM_NUMBER).andExpect(status().isOk());
+        game.postJson("/game/tournaments", Map.of("id", TOURNAMENT, "name", "Cup", "roomIds", List.of(ROOM)))
+                .andExpect(status().isOk());
+
+        game.joinRoom("alice").andExpect(status().isOk());
+        game.joinRoom("bob").andExpect(status().isOk());
+        score("alice", 30);
+        score("bob", 20);
+    }
+
+    @Test
+    void pointsAreKeptWhenAPlayerLeaves() throws Exception {
+        exit("alice");
+
+        standing("alice").andExpect(jsonPath("$.score").value(30)).andExpect(jsonPath("$.rank").value(1));
+        recompute().andExpect(jsonPath("$.mismatches").value(0));
+    }
+
+    @Test
+    void rejoiningAddsToTheKeptPoints() throws Exception {
+        exit("alice");
+        game.joinRoom("alice").andExpect(status().isOk());
+        score("alice", 5);
+
+        standing("alice").andExpect(jsonPath("$.score").value(35));
+        recompute().andExpect(jsonPath("$.mismatches").value(0));
+    }
+
+    @Test
+    void pointsAreKeptWhenTheHostEndsTheRoom() throws Exception {
+        exit(HOST);
+
+        mvc.perform(get("/game/tournaments/" + TOURNAMENT + "/leaderboard"))
+                .andExpect(jsonPath("$[0].playerId").value("alice"))
+                .andExpect(jsonPath("$[0].score").value(30))
+                .andExpect(jsonPath("$[1].playerId").value("bob"))
+                .andExpect(jsonPath("$[1].score").value(20));
+        recompute().andExpect(jsonPath("$.mismatches").value(0));
+    }
+
+    @Test
+    void restartedServerCountsPointsOfDeletedRooms() throws Exception {
+        exit("alice");
+        exit(HOST);
+
+        MockMvc restarted = MockMvcBuilders.standaloneSetup(new TournamentController(new TournamentService(firestore))).build();
+        restarted.perform(get("/game/tournaments/" + TOURNAMENT + "/players/alice")).andExpect(jsonPath("$.score").value(30));
+        restarted.perform(get("/game/tournaments/" + TOURNAMENT + "/players/bob")).andExpect(jsonPath("$.score").value(20));
+    }
+
+    @Test
+    void deletingARoomTooLargeForOneCommitKeepsEveryResult() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            store.put("Rooms/" + ROOM + "/Players/p" + i, Map.of("id", "p" + i, "name", "Player " + i, "score", (long) i));
+        }
+
+        mvc.perform(delete("/game/rooms/" + ROOM)).andExpect(status().isOk());
+
+        assertNull(store.get("Rooms/" + ROOM));
+        assertNull(store.get("Rooms/" + ROOM + "/Players/p299"));
+        assertEquals(299L, store.get("Results/" + ROOM + "/Players/p299").get("score"));
+        MockMvc restarted = MockMvcBuilders.standaloneSetup(new TournamentController(new TournamentService(firestore))).build();
+        restarted.perform(get("/game/tournaments/" + TOURNAMENT + "/players/p299")).andExpect(jsonPath("$.score").value(299));
+        restarted.perform(get("/game/tournaments/" + TOURNAMENT + "/players/alice")).andExpect(jsonPath("$.score").value(30));
+    }
+
+    @Test
+    void rebuildPicksUpGamesPlayedOnAnotherServer() throws Exception {
+        TournamentService otherTournaments = new TournamentService(firestore);
+        MockMvc other = MockMvcBuilders.standaloneSetup(new TournamentController(otherTournaments)).build();
+        other.perform(get("/game/tournaments/" + TOURNAMENT + "/players/alice")).andExpect(jsonPath("$.score").value(30));
+
+        score("alice", 5);
+        other.perform(get("/game/tournaments/" + TOURNAMENT + "/players/alice")).andExpect(jsonPath("$.score").value(30));
+
+        otherTournaments.rebuildLoaded();
+        other.perform(get("/game/tournaments/" + TOURNAMENT + "/players/alice")).andExpect(jsonPath("$.score").value(35));
+    }
+
+    private void score(String playerId, long change) throws Exception {
+        game.postJson("/game/rooms/" + ROOM + "/scores",
+                        Map.of("hostId", HOST, "adjustments", List.of(Map.of("playerId", playerId, "change", change))))
+                .andExpect(status().isOk());
+    }
+
+    private void exit(String playerId) throws Exception {
+        game.exit(playerId).andExpect(status().isOk());
+    }
+
+    private ResultActions standing(String playerId) throws Exception {
+        return mvc.perform(get("/game/tournaments/" + TOURNAMENT + "/players/" + playerId));
+    }
+
+    private ResultActions recompute() throws Exception {
+        return mvc.perform(post("/game/tournaments/" + TOURNAMENT + "/recompute"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuzzerRateLimiterTest {
+    private static final long REFILLED = TimeUnit.MILLISECONDS.toNanos(1_100);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final BuzzerRateLimiter limiter = new BuzzerRateLimiter(registry, now::get);
+
+    @Test
+    void repeatGetsTheLastOutcome() {
+        assertTrue(limiter.tryPress("room", "player"));
+        limiter.remember("room", "player", BuzzerRateLimiter.Outcome.FAILED);
+
+        assertFalse(limiter.tryPress("room", "player"));
+        assertEquals(BuzzerRateLimiter.Outcome.FAILED, limiter.lastOutcome("room", "player"));
+    }
+
+    @Test
+    void outcomeIsForgottenWhenTheNextPressIsHandled() {
+        assertTrue(limiter.tryPress("room", "player"));
+        limiter.remember("room", "player", BuzzerRateLimiter.Outcome.ACCEPTED);
+        now.addAndGet(REFILLED);
+
+        assertTrue(limiter.tryPress("room", "player"));
+        assertNull(limiter.lastOutcome("room", "player"));
+    }
+
+    @Test
+    void sweepDropsOnlyRefilledBuckets() {
+        assertTrue(limiter.tryPress("room", "idle"));
+        now.addAndGet(REFILLED);
+        assertTrue(limiter.tryPress("other", "busy"));
+
+        limiter.sweep();
+
+        assertEquals(1, registry.get("buzzer.limiter.players").gauge().value());
+        assertFalse(limiter.tryPress("other", "busy"), "the busy player's bucket must survive the sweep");
+    }
+}
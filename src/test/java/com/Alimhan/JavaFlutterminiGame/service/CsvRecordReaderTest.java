@@ -0,0 +1,39 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void quotedFieldsKeepCommasDoubledQuotesAndLineBreaks() throws Exception {
+        CsvRecordReader csv = reader("\"a, b\",\"say \"\"hi\"\"\",\"line one\r\nline two\"\r\nnext,,\"\"\n");
+
+        assertEquals(List.of("a, b", "say \"hi\"", "line one\r\nline two"), csv.next());
+        assertEquals(List.of("next", "", ""), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void lastRecordNeedsNoLineBreak() throws Exception {
+        CsvRecordReader csv = reader("text,answer\r\n\"quoted at the end\",\"closed\"");
+
+        assertEquals(List.of("text", "answer"), csv.next());
+        assertEquals(List.of("quoted at the end", "closed"), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void byteOrderMarkIsLeftForTheHeaderToStrip() throws Exception {
+        CsvRecordReader csv = reader("\uFEFFtext,answer\n");
+
+        assertEquals(List.of("\uFEFFtext", "answer"), csv.next());
+    }
+
+    private static CsvRecordReader reader(String csv) {
+        return new CsvRecordReader(new BufferedReader(new StringReader(csv)));
+    }
+}
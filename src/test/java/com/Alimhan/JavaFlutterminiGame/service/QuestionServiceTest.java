@@ -0,0 +1,65 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.Alimhan.JavaFlutterminiGame.config.FirestoreProvider;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QuerySnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QuestionServiceTest {
+    private final AtomicLong now = new AtomicLong();
+    private final Firestore db = mock(Firestore.class, RETURNS_DEEP_STUBS);
+    private final QuestionService questions = new QuestionService(FirestoreProvider.of(db),
+            new ResilientStore(new SimpleMeterRegistry()), now::get);
+
+    @Test
+    void cachedQuestionIsReadAgainOnceItExpires() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        DocumentSnapshot doc = mock(DocumentSnapshot.class);
+        when(doc.exists()).thenReturn(true);
+        when(doc.getId()).thenReturn("q01");
+        when(doc.getLong("score")).thenReturn(10L, 20L);
+        DocumentReference ref = db.collection("Questions").document("q01");
+        when(ref.get()).thenAnswer(call -> {
+            reads.incrementAndGet();
+            return ApiFutures.immediateFuture(doc);
+        });
+
+        assertEquals(10L, questions.getQuestion("q01").getScore());
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertEquals(10L, questions.getQuestion("q01").getScore());
+        assertEquals(1, reads.get());
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertEquals(20L, questions.getQuestion("q01").getScore());
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    void sweepDropsOnlyIdleRooms() {
+        // Prefetching finds nothing to buffer
+        QuerySnapshot none = mock(QuerySnapshot.class);
+        Query byId = mock(Query.class, RETURNS_DEEP_STUBS);
+        when(db.collection("Questions").orderBy(any(FieldPath.class))).thenReturn(byId);
+        when(byId.startAfter((Object) any()).limit(anyInt()).get()).thenReturn(ApiFutures.immediateFuture(none));
+        when(byId.limit(anyInt()).get()).thenReturn(ApiFutures.immediateFuture(none));
+
+        questions.warm("idle", "q01");
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        questions.warm("busy", "q01");
+
+        questions.sweep();
+
+        assertEquals(1, questions.prefetchedRooms());
+    }
+}
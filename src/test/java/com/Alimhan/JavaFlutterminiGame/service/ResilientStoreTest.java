@@ -0,0 +1,104 @@
+package com.Alimhan.JavaFlutterminiGame.service;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.UnavailableException;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientStoreTest {
+    private static final long OPEN_MS = 200;
+
+    private final ResilientStore store = new ResilientStore(new SimpleMeterRegistry(), TimeUnit.MILLISECONDS.toNanos(OPEN_MS));
+
+    @Test
+    void writeAsHalfOpenTrialClosesTheBreaker() throws Exception {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+
+        AtomicInteger sent = new AtomicInteger();
+        store.write("room.update", () -> {
+            sent.incrementAndGet();
+            return ApiFutures.immediateFuture("ok");
+        });
+
+        assertEquals(1, sent.get(), "the trial write should be sent, not queued");
+        assertFalse(store.isOpen());
+        assertEquals("ok", store.read("room.get", () -> ApiFutures.immediateFuture("ok")));
+    }
+
+    @Test
+    void failedTrialReopensTheBreaker() throws Exception {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+
+        assertThrows(Exception.class, () -> store.read("room.get", ResilientStoreTest::failure));
+        assertTrue(store.isOpen());
+        assertThrows(StoreUnavailableException.class, () -> store.read("room.get", () -> ApiFutures.immediateFuture("ok")));
+    }
+
+    @Test
+    void queuedWriteWithUnknownOutcomeIsNotSentAgain() throws Exception {
+        open();
+        AtomicInteger sent = new AtomicInteger();
+        store.write("player.score.batch", () -> {
+            sent.incrementAndGet();
+            return failure();
+        });
+        assertEquals(0, sent.get(), "writes are queued while the breaker is open");
+
+        waitFor(() -> sent.get() >= 1);
+        Thread.sleep(2_000);
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    void queuedWriteRefusedByTheStoreIsSentAgain() throws Exception {
+        open();
+        AtomicInteger sent = new AtomicInteger();
+        store.write("room.update", () -> sent.incrementAndGet() == 1
+                ? ApiFutures.<String>immediateFailedFuture(new UnavailableException(new RuntimeException("connection refused"), GrpcStatusCode.of(Status.Code.UNAVAILABLE), true))
+                : ApiFutures.immediateFuture("ok"));
+
+        waitFor(() -> sent.get() >= 2);
+        waitFor(() -> !store.isOpen());
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    void callsThatNeverReachTheStoreDoNotOpenTheBreaker() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalArgumentException.class, () -> store.<String>read("room.get", () -> {
+                throw new IllegalArgumentException("Invalid path");
+            }));
+        }
+
+        assertFalse(store.isOpen());
+        assertEquals("ok", store.read("room.get", () -> ApiFutures.immediateFuture("ok")));
+    }
+
+    private void open() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(Exception.class, () -> store.read("room.get", ResilientStoreTest::failure));
+        }
+        assertTrue(store.isOpen());
+    }
+
+    private static ApiFuture<String> failure() {
+        return ApiFutures.immediateFailedFuture(new IllegalStateException("store is down"));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(20);
+        }
+    }
+}